@@ -5,10 +5,13 @@ import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.view.MotionEvent;
 
+import java.util.List;
+
 import cn.ezandroid.lib.board.BoardView;
 import cn.ezandroid.lib.board.Intersection;
 import cn.ezandroid.lib.board.Stone;
 import cn.ezandroid.lib.board.StoneColor;
+import cn.ezandroid.lib.board.rule.RuleBoard;
 import cn.ezandroid.lib.board.sound.SoundManager;
 import cn.ezandroid.lib.board.theme.GoTheme;
 import cn.ezandroid.lib.board.theme.WoodTheme;
@@ -16,6 +19,7 @@ import cn.ezandroid.lib.board.theme.WoodTheme;
 public class MainActivity extends AppCompatActivity {
 
     private BoardView mBoardView;
+    private RuleBoard mRuleBoard;
     private boolean mIsCurrentBlack = true;
 
     @SuppressLint("ClickableViewAccessibility")
@@ -25,6 +29,7 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         mBoardView = findViewById(R.id.board);
+        mRuleBoard = new RuleBoard(mBoardView.getBoardSize());
         mBoardView.setOnTouchListener((v, event) -> {
             Intersection nearest = mBoardView.getNearestIntersection(event.getX(), event.getY());
             if (nearest != null) {
@@ -36,11 +41,22 @@ public class MainActivity extends AppCompatActivity {
                             stone.color = mIsCurrentBlack ? StoneColor.BLACK : StoneColor.WHITE;
                             stone.intersection = highlight;
 
+                            List<Intersection> captured = mRuleBoard.play(stone);
+                            if (captured == null) {
+                                // 非法着手
+                                return false;
+                            }
+                            mBoardView.beginUpdate();
                             mBoardView.addStone(stone);
+                            mBoardView.removeStonesAt(captured, true);
+                            mBoardView.endUpdate();
                             mBoardView.setHighlightIntersection(null);
                             mIsCurrentBlack = !mIsCurrentBlack;
 
-                            SoundManager.getInstance().playSound(MainActivity.this, mBoardView.getGoTheme().mSoundEffect.mMove);
+                            GoTheme.SoundEffect soundEffect = mBoardView.getGoTheme().mSoundEffect;
+                            String sound = captured.isEmpty() ? soundEffect.mMove
+                                    : captured.size() <= 2 ? soundEffect.mTakeLess : soundEffect.mTakeMore;
+                            SoundManager.getInstance().playSound(MainActivity.this, sound);
                             return false;
                         } else {
                             mBoardView.setHighlightIntersection(nearest);
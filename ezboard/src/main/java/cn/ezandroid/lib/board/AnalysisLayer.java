@@ -0,0 +1,349 @@
+package cn.ezandroid.lib.board;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+
+import java.util.Arrays;
+
+/**
+ * 分析叠加层
+ * <p>
+ * 在棋子之上显示引擎分析结果：候选点的胜率及计算量、各交叉点的归属；
+ * 输入数组先量化为色阶及文字对应的整数，只有量化后发生变化的交叉点才会在下一次绘制时重绘到叠加层位图中，
+ * 每帧只需贴图一次；更新数据时只复制到预先分配的数组，不产生对象
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+final class AnalysisLayer {
+
+    private static final int OWNERSHIP_LEVELS = 64; // 归属色阶数，正负各一半
+    private static final int WIN_RATE_LEVELS = 1001; // 胜率按千分比量化
+    private static final int NONE = -1;
+
+    private static final int[] OWNERSHIP_RAMP = new int[OWNERSHIP_LEVELS + 1];
+    private static final int[] WIN_RATE_RAMP = new int[101];
+
+    static {
+        // 归属色阶：白方归属为半透明白色，黑方归属为半透明黑色，透明度随归属程度增加
+        for (int i = 0; i <= OWNERSHIP_LEVELS; i++) {
+            float value = (i - OWNERSHIP_LEVELS / 2f) / (OWNERSHIP_LEVELS / 2f);
+            int alpha = Math.round(Math.abs(value) * 0xC0);
+            OWNERSHIP_RAMP[i] = value >= 0 ? (alpha << 24) : (alpha << 24) | 0xFFFFFF;
+        }
+        // 胜率色阶：红色(低)经黄色到绿色(高)
+        for (int i = 0; i <= 100; i++) {
+            int red = i < 50 ? 0xE0 : Math.round(0xE0 * (100 - i) / 50f);
+            int green = i < 50 ? Math.round(0xC0 * i / 50f) : 0xC0;
+            WIN_RATE_RAMP[i] = 0xE0000000 | (red << 16) | (green << 8) | 0x30;
+        }
+    }
+
+    private int mBoardSize;
+
+    // 量化后的分析数据，NONE表示没有该项数据
+    private int[] mOwnershipLevels = new int[0];
+    private int[] mWinRateLevels = new int[0];
+    private int[] mVisits = new int[0];
+    private boolean[] mDirtyCells = new boolean[0];
+    private boolean mIsAllDirty;
+    private int mDirtyCount;
+    private int mActiveCount; // 有分析数据的交叉点数
+
+    private Bitmap mLayerBitmap;
+    private Canvas mLayerCanvas;
+    private int mLayerSquareSize;
+
+    private final Paint mPaint;
+    private final char[] mTextBuffer = new char[8];
+    // 文字布局缓存，只在格子尺寸变化时重新计算
+    private int mTextSquareSize = -1;
+    private float mWinRateTextSize;
+    private float mVisitsTextSize;
+    private float mWinRateBaseline;
+    private float mVisitsBaseline;
+
+    AnalysisLayer() {
+        mPaint = new Paint();
+        mPaint.setAntiAlias(true);
+        mPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    /**
+     * 更新分析数据，数组按交叉点索引(x + y * boardSize)存储，内容会被复制
+     *
+     * @param boardSize
+     * @param ownership  归属，-1到1，正数表示黑方，为null时不显示
+     * @param winRates   候选点胜率，0到1
+     * @param visits     候选点计算量，不大于0的交叉点不是候选点，为null时不显示候选点
+     * @param dirtyCells 输出发生变化的交叉点范围，以交叉点坐标表示，right及bottom不包含在内
+     * @return 是否有交叉点发生变化
+     */
+    boolean update(int boardSize, float[] ownership, float[] winRates, int[] visits, Rect dirtyCells) {
+        int count = boardSize * boardSize;
+        if (mBoardSize != boardSize) {
+            mBoardSize = boardSize;
+            mOwnershipLevels = new int[count];
+            mWinRateLevels = new int[count];
+            mVisits = new int[count];
+            mDirtyCells = new boolean[count];
+            Arrays.fill(mOwnershipLevels, NONE);
+            Arrays.fill(mWinRateLevels, NONE);
+            Arrays.fill(mVisits, NONE);
+            mIsAllDirty = true;
+            mDirtyCount = 0;
+            mActiveCount = 0;
+        }
+        int left = boardSize;
+        int top = boardSize;
+        int right = -1;
+        int bottom = -1;
+        for (int i = 0; i < count; i++) {
+            int ownershipLevel = NONE;
+            if (ownership != null && i < ownership.length && !Float.isNaN(ownership[i])) {
+                float value = Math.max(-1f, Math.min(1f, ownership[i]));
+                ownershipLevel = Math.round((value + 1) * OWNERSHIP_LEVELS / 2f);
+            }
+            int visitCount = NONE;
+            int winRateLevel = NONE;
+            if (visits != null && i < visits.length && visits[i] > 0) {
+                visitCount = visits[i];
+                if (winRates != null && i < winRates.length && !Float.isNaN(winRates[i])) {
+                    winRateLevel = Math.round(Math.max(0f, Math.min(1f, winRates[i])) * (WIN_RATE_LEVELS - 1));
+                }
+            }
+            if (ownershipLevel == mOwnershipLevels[i] && winRateLevel == mWinRateLevels[i]
+                    && getVisitsKey(visitCount) == getVisitsKey(mVisits[i])) {
+                continue;
+            }
+            boolean wasActive = mOwnershipLevels[i] != NONE || mVisits[i] != NONE;
+            boolean isActive = ownershipLevel != NONE || visitCount != NONE;
+            if (wasActive != isActive) {
+                mActiveCount += isActive ? 1 : -1;
+            }
+            mOwnershipLevels[i] = ownershipLevel;
+            mWinRateLevels[i] = winRateLevel;
+            mVisits[i] = visitCount;
+            if (!mDirtyCells[i]) {
+                mDirtyCells[i] = true;
+                mDirtyCount++;
+            }
+            int x = i % boardSize;
+            int y = i / boardSize;
+            left = Math.min(left, x);
+            top = Math.min(top, y);
+            right = Math.max(right, x);
+            bottom = Math.max(bottom, y);
+        }
+        if (right < 0) {
+            return false;
+        }
+        dirtyCells.set(left, top, right + 1, bottom + 1);
+        return true;
+    }
+
+    /**
+     * 将变化的交叉点重绘到叠加层后贴到画布上
+     *
+     * @param canvas
+     * @param width
+     * @param height
+     * @param squareSize
+     */
+    void draw(Canvas canvas, int width, int height, int squareSize) {
+        if (mActiveCount == 0) {
+            // 没有分析数据时不绘制，变化的交叉点保留到下次有数据时再清除
+            return;
+        }
+        if (width <= 0 || height <= 0 || squareSize <= 0) {
+            return;
+        }
+        if (mLayerBitmap == null || mLayerBitmap.isRecycled()
+                || mLayerBitmap.getWidth() != width || mLayerBitmap.getHeight() != height) {
+            release();
+            try {
+                mLayerBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                e.printStackTrace();
+                return;
+            }
+            mLayerCanvas = new Canvas(mLayerBitmap);
+            mIsAllDirty = true;
+        }
+        if (mLayerSquareSize != squareSize) {
+            mLayerSquareSize = squareSize;
+            mIsAllDirty = true;
+        }
+        if (mIsAllDirty) {
+            mLayerBitmap.eraseColor(Color.TRANSPARENT);
+            for (int i = 0; i < mDirtyCells.length; i++) {
+                drawCell(i, squareSize);
+                mDirtyCells[i] = false;
+            }
+            mIsAllDirty = false;
+            mDirtyCount = 0;
+        } else if (mDirtyCount > 0) {
+            for (int i = 0; i < mDirtyCells.length; i++) {
+                if (mDirtyCells[i]) {
+                    int left = Math.round((i % mBoardSize + 0.5f) * squareSize);
+                    int top = Math.round((i / mBoardSize + 0.5f) * squareSize);
+                    int saveCount = mLayerCanvas.save();
+                    mLayerCanvas.clipRect(left, top, left + squareSize, top + squareSize);
+                    mLayerCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                    drawCell(i, squareSize);
+                    mLayerCanvas.restoreToCount(saveCount);
+                    mDirtyCells[i] = false;
+                }
+            }
+            mDirtyCount = 0;
+        }
+        canvas.drawBitmap(mLayerBitmap, 0, 0, null);
+    }
+
+    /**
+     * 释放叠加层位图，下次绘制时整体重绘
+     */
+    void release() {
+        if (mLayerBitmap != null) {
+            mLayerBitmap.recycle();
+            mLayerBitmap = null;
+            mLayerCanvas = null;
+        }
+        mIsAllDirty = true;
+    }
+
+    private void drawCell(int index, int squareSize) {
+        float left = Math.round((index % mBoardSize + 0.5f) * squareSize);
+        float top = Math.round((index / mBoardSize + 0.5f) * squareSize);
+        float centerX = left + squareSize / 2f;
+        float centerY = top + squareSize / 2f;
+
+        int ownershipLevel = mOwnershipLevels[index];
+        if (ownershipLevel != NONE && OWNERSHIP_RAMP[ownershipLevel] >>> 24 != 0) {
+            float half = squareSize / 5f;
+            mPaint.setStyle(Paint.Style.FILL);
+            mPaint.setColor(OWNERSHIP_RAMP[ownershipLevel]);
+            mLayerCanvas.drawRect(centerX - half, centerY - half, centerX + half, centerY + half, mPaint);
+        }
+
+        int visits = mVisits[index];
+        if (visits == NONE) {
+            return;
+        }
+        int winRateLevel = mWinRateLevels[index];
+        mPaint.setStyle(Paint.Style.FILL);
+        mPaint.setColor(winRateLevel != NONE ? WIN_RATE_RAMP[winRateLevel / 10] : WIN_RATE_RAMP[50]);
+        mLayerCanvas.drawCircle(centerX, centerY, squareSize / 2f - 1, mPaint);
+
+        if (mTextSquareSize != squareSize) {
+            layoutText(squareSize);
+        }
+        mPaint.setColor(Color.BLACK);
+        if (winRateLevel != NONE) {
+            int length = formatWinRate(winRateLevel);
+            mPaint.setTextSize(mWinRateTextSize);
+            mLayerCanvas.drawText(mTextBuffer, 0, length, centerX, top + mWinRateBaseline, mPaint);
+        }
+        int length = formatVisits(visits);
+        mPaint.setTextSize(mVisitsTextSize);
+        mLayerCanvas.drawText(mTextBuffer, 0, length, centerX, top + mVisitsBaseline, mPaint);
+    }
+
+    private void layoutText(int squareSize) {
+        mWinRateTextSize = squareSize * 0.36f;
+        mVisitsTextSize = squareSize * 0.3f;
+        mWinRateBaseline = squareSize * 0.47f;
+        mVisitsBaseline = squareSize * 0.82f;
+        mTextSquareSize = squareSize;
+    }
+
+    /**
+     * 将千分比胜率格式化为百分比文字，如"53.2"
+     *
+     * @param level
+     * @return 文字长度
+     */
+    private int formatWinRate(int level) {
+        int length = 0;
+        int integer = level / 10;
+        if (integer >= 100) {
+            mTextBuffer[length++] = '1';
+            mTextBuffer[length++] = '0';
+            mTextBuffer[length++] = '0';
+            return length;
+        }
+        if (integer >= 10) {
+            mTextBuffer[length++] = (char) ('0' + integer / 10);
+        }
+        mTextBuffer[length++] = (char) ('0' + integer % 10);
+        mTextBuffer[length++] = '.';
+        mTextBuffer[length++] = (char) ('0' + level % 10);
+        return length;
+    }
+
+    /**
+     * 将计算量格式化为最多4个字符的文字，如"863"、"1.2k"、"35k"、"2.1m"
+     *
+     * @param visits
+     * @return 文字长度
+     */
+    private int formatVisits(int visits) {
+        char unit = 0;
+        int tenths = 0;
+        if (visits >= 1000000) {
+            unit = 'm';
+            tenths = visits / 100000;
+        } else if (visits >= 1000) {
+            unit = 'k';
+            tenths = visits / 100;
+        }
+        int length = 0;
+        if (unit == 0) {
+            length = appendInt(visits, length);
+        } else if (tenths < 100) {
+            length = appendInt(tenths / 10, length);
+            mTextBuffer[length++] = '.';
+            mTextBuffer[length++] = (char) ('0' + tenths % 10);
+            mTextBuffer[length++] = unit;
+        } else {
+            length = appendInt(tenths / 10, length);
+            mTextBuffer[length++] = unit;
+        }
+        return length;
+    }
+
+    private int appendInt(int value, int offset) {
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            mTextBuffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+
+    /**
+     * 计算量在显示精度内相同时视为未变化，避免计算量持续增长时反复重绘
+     *
+     * @param visits
+     * @return
+     */
+    private static int getVisitsKey(int visits) {
+        if (visits >= 10000000) {
+            return (4 << 24) | visits / 1000000;
+        } else if (visits >= 1000000) {
+            return (3 << 24) | visits / 100000;
+        } else if (visits >= 10000) {
+            return (2 << 24) | visits / 1000;
+        } else if (visits >= 1000) {
+            return (1 << 24) | visits / 100;
+        }
+        return visits;
+    }
+}
@@ -0,0 +1,190 @@
+package cn.ezandroid.lib.board;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+
+import cn.ezandroid.lib.board.theme.GoTheme;
+
+/**
+ * 棋盘静态层绘制
+ * <p>
+ * 负责背景、坐标、棋盘线及星位的绘制，由BoardView及缩略图渲染共用；每个实例持有自己的画笔，不同线程应使用不同的实例
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+final class BoardRenderer {
+
+    private final Paint mPaint;
+
+    private int mBoardSize;
+    private int mSquareSize;
+
+    private String[] mColumnLabels; // 横坐标文字
+    private String[] mRowLabels; // 纵坐标文字
+    private float[] mColumnLabelWidths;
+    private float[] mRowLabelWidths;
+
+    BoardRenderer() {
+        mPaint = new Paint();
+        mPaint.setAntiAlias(true);
+        mPaint.setFilterBitmap(true);
+    }
+
+    /**
+     * 设置棋盘大小及格子尺寸，坐标文字只在两者变化时重新生成
+     *
+     * @param boardSize
+     * @param squareSize
+     */
+    void setSize(int boardSize, int squareSize) {
+        if (mBoardSize == boardSize && mSquareSize == squareSize && mColumnLabels != null) {
+            return;
+        }
+        mBoardSize = boardSize;
+        mSquareSize = squareSize;
+        if (mColumnLabels == null || mColumnLabels.length != boardSize) {
+            mColumnLabels = new String[boardSize];
+            mRowLabels = new String[boardSize];
+            mColumnLabelWidths = new float[boardSize];
+            mRowLabelWidths = new float[boardSize];
+            for (int i = 0; i < boardSize; i++) {
+                char c = (char) ('A' + i);
+                if (c >= 'I') {
+                    c++; // 跳过字母I
+                }
+                mColumnLabels[i] = String.valueOf(c);
+                mRowLabels[i] = String.valueOf(i + 1);
+            }
+        }
+        mPaint.setTextSize(squareSize / 2);
+        for (int i = 0; i < boardSize; i++) {
+            mColumnLabelWidths[i] = mPaint.measureText(mColumnLabels[i]);
+            mRowLabelWidths[i] = mPaint.measureText(mRowLabels[i]);
+        }
+    }
+
+    /**
+     * 绘制棋盘静态层
+     *
+     * @param canvas
+     * @param spec
+     * @param width
+     * @param height
+     * @param showCoordinate
+     */
+    void drawStaticBoard(Canvas canvas, GoTheme.BoardSpec spec, int width, int height, boolean showCoordinate) {
+        int squareSize = mSquareSize;
+        int boardSize = mBoardSize;
+        mPaint.setStyle(Paint.Style.FILL);
+
+        Drawable drawable = spec.mBackground;
+        if (drawable != null) {
+            // 背景Drawable在不同的渲染线程间共享
+            synchronized (drawable) {
+                drawable.setBounds(0, 0, width, height);
+                drawable.draw(canvas);
+            }
+        }
+
+        canvas.translate(squareSize, squareSize);
+
+        // 1，绘制棋盘坐标
+        if (showCoordinate) {
+            mPaint.setTextSize(squareSize / 2);
+            mPaint.setColor(spec.mBorderColor);
+            for (int i = 0; i < boardSize; i++) {
+                drawColumnLabels(canvas, i);
+                drawRowLabels(canvas, i);
+            }
+        }
+
+        // 2，绘制棋盘线
+        for (int i = 0; i < boardSize; i++) {
+            if (i == 0 || i == boardSize - 1) {
+                mPaint.setColor(spec.mBorderColor);
+                mPaint.setStrokeWidth(spec.mBorderWidth);
+            } else {
+                mPaint.setColor(spec.mLineColor);
+                mPaint.setStrokeWidth(spec.mLineWidth);
+            }
+            canvas.drawLine(0, i * squareSize, squareSize * (boardSize - 1), i * squareSize, mPaint);
+            canvas.drawLine(i * squareSize, 0, i * squareSize, squareSize * (boardSize - 1), mPaint);
+        }
+
+        // 3，绘制星位
+        mPaint.setColor(spec.mLineColor);
+        for (int i = 0; i < boardSize; i++) {
+            for (int j = 0; j < boardSize; j++) {
+                switch (boardSize) {
+                    case 9:
+                        if ((i == 2 || i == 6) && (j == 2 || j == 6) || (i == 4 && j == 4)) {
+                            canvas.drawCircle(i * squareSize, j * squareSize, squareSize / 8, mPaint);
+                        }
+                        break;
+                    case 13:
+                        if ((i == 3 || i == 9) && (j == 3 || j == 9) || (i == 6 && j == 6)) {
+                            canvas.drawCircle(i * squareSize, j * squareSize, squareSize / 8, mPaint);
+                        }
+                        break;
+                    case 19:
+                        if ((i == 3 || i == 9 || i == 15) && (j == 3 || j == 9 || j == 15)) {
+                            canvas.drawCircle(i * squareSize, j * squareSize, squareSize / 8, mPaint);
+                        }
+                        break;
+                }
+            }
+        }
+
+        canvas.translate(-squareSize, -squareSize);
+    }
+
+    /**
+     * 以指定颜色绘制交叉点对应的四个坐标，超出当前棋盘的交叉点不绘制
+     *
+     * @param canvas
+     * @param intersection
+     * @param color
+     */
+    void drawCoordinates(Canvas canvas, Intersection intersection, int color) {
+        if (intersection.x < 0 || intersection.x >= mBoardSize || intersection.y < 0 || intersection.y >= mBoardSize) {
+            return;
+        }
+        canvas.translate(mSquareSize, mSquareSize);
+
+        mPaint.setTextSize(mSquareSize / 2);
+        mPaint.setStyle(Paint.Style.FILL);
+        mPaint.setColor(color);
+        drawColumnLabels(canvas, intersection.x);
+        drawRowLabels(canvas, mBoardSize - intersection.y - 1);
+
+        canvas.translate(-mSquareSize, -mSquareSize);
+    }
+
+    /**
+     * 绘制上下两侧的横坐标
+     *
+     * @param canvas
+     * @param i
+     */
+    private void drawColumnLabels(Canvas canvas, int i) {
+        int coordinateTextSize = mSquareSize / 2;
+        float x = i * mSquareSize - mColumnLabelWidths[i] / 2;
+        canvas.drawText(mColumnLabels[i], x, -coordinateTextSize / 2, mPaint);
+        canvas.drawText(mColumnLabels[i], x, mBoardSize * mSquareSize - coordinateTextSize / 2, mPaint);
+    }
+
+    /**
+     * 绘制左右两侧的纵坐标
+     *
+     * @param canvas
+     * @param i
+     */
+    private void drawRowLabels(Canvas canvas, int i) {
+        int coordinateTextSize = mSquareSize / 2;
+        float y = (mBoardSize - i - 1) * mSquareSize + coordinateTextSize / 2;
+        canvas.drawText(mRowLabels[i], -mSquareSize / 2 - mRowLabelWidths[i] / 2, y, mPaint);
+        canvas.drawText(mRowLabels[i], mBoardSize * mSquareSize - mSquareSize / 2 - mRowLabelWidths[i] / 2, y, mPaint);
+    }
+}
@@ -0,0 +1,320 @@
+package cn.ezandroid.lib.board;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 不可变的棋盘局面
+ * <p>
+ * 黑白棋子分别以位棋盘的形式压缩存储在long数组中，交叉点(x, y)对应第x + y * boardSize位，19路棋盘每种颜色只需6个long
+ * <p>
+ * 修改操作返回新的局面，未改变颜色的位数组在新旧局面间共享
+ * <p>
+ * 局面的Zobrist哈希在修改时增量维护，与RuleBoard的局面哈希一致，可以作为分析结果等数据的缓存键；
+ * 棋盘大小不能超过Zobrist.MAX_BOARD_SIZE，创建局面时会抛出IllegalArgumentException
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public final class BoardState implements Serializable {
+
+    public static final long serialVersionUID = 42L;
+
+    private final int mBoardSize;
+    private final long[] mBlack;
+    private final long[] mWhite;
+    private final long mZobristHash;
+
+    private BoardState(int boardSize, long[] black, long[] white, long zobristHash) {
+        mBoardSize = boardSize;
+        mBlack = black;
+        mWhite = white;
+        mZobristHash = zobristHash;
+    }
+
+    private BoardState(int boardSize, long[] black, long[] white) {
+        this(boardSize, black, white, computeZobristHash(boardSize, black, white));
+    }
+
+    private static long computeZobristHash(int boardSize, long[] black, long[] white) {
+        long hash = 0;
+        int count = boardSize * boardSize;
+        for (int i = 0; i < count; i++) {
+            long bit = 1L << i;
+            if ((black[i >>> 6] & bit) != 0) {
+                hash ^= Zobrist.getKey(i % boardSize, i / boardSize, StoneColor.BLACK);
+            } else if ((white[i >>> 6] & bit) != 0) {
+                hash ^= Zobrist.getKey(i % boardSize, i / boardSize, StoneColor.WHITE);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 创建空局面
+     *
+     * @param boardSize
+     * @return
+     */
+    public static BoardState empty(int boardSize) {
+        int words = getWordCount(boardSize);
+        return new BoardState(boardSize, new long[words], new long[words], 0);
+    }
+
+    /**
+     * 根据棋子列表创建局面，停一手及超出棋盘范围的棋子会被忽略，同一交叉点以后出现的棋子为准
+     *
+     * @param boardSize
+     * @param stones
+     * @return
+     */
+    public static BoardState valueOf(int boardSize, Collection<Stone> stones) {
+        int words = getWordCount(boardSize);
+        long[] black = new long[words];
+        long[] white = new long[words];
+        for (Stone stone : stones) {
+            Intersection intersection = stone.intersection;
+            if (intersection == null
+                    || intersection.x < 0 || intersection.x >= boardSize
+                    || intersection.y < 0 || intersection.y >= boardSize) {
+                continue;
+            }
+            int index = intersection.x + intersection.y * boardSize;
+            long bit = 1L << index;
+            if (stone.color == StoneColor.BLACK) {
+                black[index >>> 6] |= bit;
+                white[index >>> 6] &= ~bit;
+            } else {
+                white[index >>> 6] |= bit;
+                black[index >>> 6] &= ~bit;
+            }
+        }
+        return new BoardState(boardSize, black, white);
+    }
+
+    /**
+     * 根据按交叉点索引排列的颜色表创建局面
+     *
+     * @param boardSize
+     * @param colors    颜色表，blackValue表示黑子，whiteValue表示白子，其他值表示空
+     * @param blackValue
+     * @param whiteValue
+     * @return
+     */
+    public static BoardState valueOf(int boardSize, byte[] colors, byte blackValue, byte whiteValue) {
+        int words = getWordCount(boardSize);
+        long[] black = new long[words];
+        long[] white = new long[words];
+        int count = boardSize * boardSize;
+        for (int i = 0; i < count; i++) {
+            if (colors[i] == blackValue) {
+                black[i >>> 6] |= 1L << i;
+            } else if (colors[i] == whiteValue) {
+                white[i >>> 6] |= 1L << i;
+            }
+        }
+        return new BoardState(boardSize, black, white);
+    }
+
+    private static int getWordCount(int boardSize) {
+        Zobrist.checkBoardSize(boardSize);
+        return (boardSize * boardSize + 63) >>> 6;
+    }
+
+    /**
+     * 获取棋盘大小
+     *
+     * @return
+     */
+    public int getBoardSize() {
+        return mBoardSize;
+    }
+
+    /**
+     * 获取指定交叉点上的棋子颜色
+     *
+     * @param x
+     * @param y
+     * @return 没有棋子时返回null
+     */
+    public StoneColor getColor(int x, int y) {
+        int index = x + y * mBoardSize;
+        long bit = 1L << index;
+        if ((mBlack[index >>> 6] & bit) != 0) {
+            return StoneColor.BLACK;
+        }
+        if ((mWhite[index >>> 6] & bit) != 0) {
+            return StoneColor.WHITE;
+        }
+        return null;
+    }
+
+    /**
+     * 判断指定交叉点是否为空
+     *
+     * @param x
+     * @param y
+     * @return
+     */
+    public boolean isEmpty(int x, int y) {
+        int index = x + y * mBoardSize;
+        return ((mBlack[index >>> 6] | mWhite[index >>> 6]) & (1L << index)) == 0;
+    }
+
+    /**
+     * 获取指定颜色的棋子数
+     *
+     * @param color
+     * @return
+     */
+    public int getStoneCount(StoneColor color) {
+        long[] bits = color == StoneColor.BLACK ? mBlack : mWhite;
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * 获取棋子总数
+     *
+     * @return
+     */
+    public int getStoneCount() {
+        return getStoneCount(StoneColor.BLACK) + getStoneCount(StoneColor.WHITE);
+    }
+
+    /**
+     * 在指定交叉点放置棋子，返回新的局面
+     *
+     * @param x
+     * @param y
+     * @param color
+     * @return 局面未改变时返回自身
+     */
+    public BoardState withStone(int x, int y, StoneColor color) {
+        StoneColor oldColor = getColor(x, y);
+        if (oldColor == color) {
+            return this;
+        }
+        long hash = mZobristHash ^ Zobrist.getKey(x, y, color);
+        if (oldColor != null) {
+            hash ^= Zobrist.getKey(x, y, oldColor);
+        }
+        int index = x + y * mBoardSize;
+        int word = index >>> 6;
+        long bit = 1L << index;
+        long[] black = mBlack;
+        long[] white = mWhite;
+        if (color == StoneColor.BLACK) {
+            black = mBlack.clone();
+            black[word] |= bit;
+            if ((white[word] & bit) != 0) {
+                white = mWhite.clone();
+                white[word] &= ~bit;
+            }
+        } else {
+            white = mWhite.clone();
+            white[word] |= bit;
+            if ((black[word] & bit) != 0) {
+                black = mBlack.clone();
+                black[word] &= ~bit;
+            }
+        }
+        return new BoardState(mBoardSize, black, white, hash);
+    }
+
+    /**
+     * 移除指定交叉点上的棋子，返回新的局面
+     *
+     * @param x
+     * @param y
+     * @return 局面未改变时返回自身
+     */
+    public BoardState withoutStone(int x, int y) {
+        int index = x + y * mBoardSize;
+        int word = index >>> 6;
+        long bit = 1L << index;
+        if ((mBlack[word] & bit) != 0) {
+            long[] black = mBlack.clone();
+            black[word] &= ~bit;
+            return new BoardState(mBoardSize, black, mWhite, mZobristHash ^ Zobrist.getKey(x, y, StoneColor.BLACK));
+        }
+        if ((mWhite[word] & bit) != 0) {
+            long[] white = mWhite.clone();
+            white[word] &= ~bit;
+            return new BoardState(mBoardSize, mBlack, white, mZobristHash ^ Zobrist.getKey(x, y, StoneColor.WHITE));
+        }
+        return this;
+    }
+
+    /**
+     * 获取局面的Zobrist哈希
+     *
+     * @return
+     */
+    public long getZobristHash() {
+        return mZobristHash;
+    }
+
+    /**
+     * 转换为棋子列表，棋子手数均为0
+     *
+     * @return
+     */
+    public List<Stone> toStones() {
+        List<Stone> stones = new ArrayList<>(getStoneCount());
+        int count = mBoardSize * mBoardSize;
+        for (int i = 0; i < count; i++) {
+            long bit = 1L << i;
+            StoneColor color;
+            if ((mBlack[i >>> 6] & bit) != 0) {
+                color = StoneColor.BLACK;
+            } else if ((mWhite[i >>> 6] & bit) != 0) {
+                color = StoneColor.WHITE;
+            } else {
+                continue;
+            }
+            Stone stone = new Stone();
+            stone.color = color;
+            stone.intersection = Intersection.valueOf(i % mBoardSize, i / mBoardSize);
+            stones.add(stone);
+        }
+        return stones;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BoardState)) return false;
+
+        BoardState state = (BoardState) o;
+
+        return mBoardSize == state.mBoardSize
+                && mZobristHash == state.mZobristHash
+                && Arrays.equals(mBlack, state.mBlack)
+                && Arrays.equals(mWhite, state.mWhite);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (mZobristHash ^ (mZobristHash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(mBoardSize * (mBoardSize + 1));
+        for (int y = 0; y < mBoardSize; y++) {
+            for (int x = 0; x < mBoardSize; x++) {
+                StoneColor color = getColor(x, y);
+                builder.append(color == StoneColor.BLACK ? 'X' : color == StoneColor.WHITE ? 'O' : '.');
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
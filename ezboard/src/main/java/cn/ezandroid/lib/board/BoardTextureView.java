@@ -0,0 +1,849 @@
+package cn.ezandroid.lib.board;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.view.TextureView;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import cn.ezandroid.lib.board.theme.GoTheme;
+import cn.ezandroid.lib.board.theme.MonochromeTheme;
+
+/**
+ * 在独立渲染线程中绘制的棋盘控件
+ * <p>
+ * 主线程中的修改方法只更新加锁保护的棋盘表并请求一帧，多次修改在渲染线程取走快照之前合并为一帧；
+ * 渲染线程复制快照后按BoardView在RENDER_MODE_CANVAS模式下的顺序绘制棋盘、高亮坐标、阴影、棋子及高亮交叉点，
+ * 相同主题下的绘制结果与BoardView一致，但不包含落子及提子动画
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class BoardTextureView extends TextureView implements TextureView.SurfaceTextureListener {
+
+    private static final int HIGHLIGHT_STROKE_WIDTH = 3;
+
+    private final Object mLock = new Object();
+
+    // 以下字段由主线程修改，渲染线程在mLock锁内复制
+    private int mBoardSize = 19; // 棋盘大小
+    private int mStoneSpace = 6; // 棋子间距
+    private boolean mIsShowCoordinate = true; // 是否显示坐标
+    private boolean mIsShowHighlightCoordinates; // 是否显示高亮坐标
+    private int mDrawNumberStyle = BoardView.DRAW_NUMBER_STYLE_DISABLE;
+    private int mDrawNumberCount = 1;
+    private GoTheme mGoTheme;
+    private GoTheme.RenderSpec mRenderSpec;
+    private Stone[] mStones; // 棋盘表，以交叉点索引(x + y * mBoardSize)存储
+    private long[] mNumberKeys; // 手数及添加顺序，用于与BoardView一致地选出最后N手
+    private long mNumberSequence;
+    private int mStoneCount;
+    private int mHighlightStoneIndex = -1;
+    private Intersection mHighlightIntersection;
+    private int mVersion; // 棋盘表版本，渲染线程据此判断是否需要重新复制
+    private boolean mIsFrameRequested;
+    private int mUpdateDepth; // 批量修改嵌套层数，大于0时渲染线程不取快照
+    private Handler mRenderHandler; // 渲染线程，Surface不可用时为null
+
+    private int mSquareSize; // 格子尺寸，只在主线程访问，用于触摸坐标换算
+
+    private final Bitmap mShadowBitmap; // 阴影图
+
+    private final Runnable mRenderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            renderFrame();
+        }
+    };
+
+    // 以下字段只在渲染线程访问
+    private SurfaceTexture mSurface;
+    private int mWidth;
+    private int mHeight;
+    private int mRenderVersion = -1;
+    private Stone[] mRenderStones = new Stone[0];
+    private long[] mRenderNumberKeys = new long[0];
+    private long[] mSortedKeys = new long[0];
+    private StoneDrawable[] mRenderDrawables = new StoneDrawable[0];
+    private GoTheme.RenderSpec mRenderDrawableSpec; // mRenderDrawables使用的主题
+    private GoTheme.ScaledTextures mRenderBlackTextures; // 渲染线程按当前棋子尺寸预缩放的黑子纹理
+    private GoTheme.ScaledTextures mRenderWhiteTextures; // 渲染线程按当前棋子尺寸预缩放的白子纹理
+    private final BoardRenderer mBoardRenderer = new BoardRenderer();
+    private final Paint mHighlightPaint = new Paint();
+    private Bitmap mBoardCacheBitmap;
+    private int mCachedBoardSize;
+    private int mCachedSquareSize;
+    private boolean mCachedShowCoordinate;
+    private GoTheme.BoardSpec mCachedBoardSpec;
+    private Bitmap mShadowSprite;
+
+    public BoardTextureView(Context context) {
+        super(context);
+        mShadowBitmap = BitmapFactory.decodeResource(context.getResources(), R.drawable.shadow);
+        initBoard();
+    }
+
+    public BoardTextureView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        mShadowBitmap = BitmapFactory.decodeResource(context.getResources(), R.drawable.shadow);
+        initBoard();
+    }
+
+    private void initBoard() {
+        mHighlightPaint.setAntiAlias(true);
+        mHighlightPaint.setColor(Color.RED);
+        mHighlightPaint.setStrokeWidth(HIGHLIGHT_STROKE_WIDTH);
+        mHighlightPaint.setStyle(Paint.Style.STROKE);
+
+        mStones = new Stone[mBoardSize * mBoardSize];
+        mNumberKeys = new long[mStones.length];
+
+        checkGoTheme();
+
+        setOpaque(false);
+        setSurfaceTextureListener(this);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        int size = Math.min(MeasureSpec.getSize(widthMeasureSpec), MeasureSpec.getSize(heightMeasureSpec));
+        if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            size = MeasureSpec.getSize(heightMeasureSpec);
+        } else if (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            size = MeasureSpec.getSize(widthMeasureSpec);
+        }
+        setMeasuredDimension(size, size);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mSquareSize = Math.round(Math.min(w, h) * 1f / (mBoardSize + 1));
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+        HandlerThread thread = new HandlerThread("BoardRender", Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        final Handler handler = new Handler(thread.getLooper());
+        final int w = width;
+        final int h = height;
+        final SurfaceTexture s = surface;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSurface = s;
+                mWidth = w;
+                mHeight = h;
+            }
+        });
+        synchronized (mLock) {
+            mRenderHandler = handler;
+            mIsFrameRequested = false;
+        }
+        requestFrame();
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surface, final int width, final int height) {
+        synchronized (mLock) {
+            if (mRenderHandler != null) {
+                mRenderHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mWidth = width;
+                        mHeight = height;
+                    }
+                });
+            }
+        }
+        requestFrame();
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(final SurfaceTexture surface) {
+        Handler handler;
+        synchronized (mLock) {
+            handler = mRenderHandler;
+            mRenderHandler = null;
+        }
+        if (handler == null) {
+            return true;
+        }
+        // 由渲染线程在处理完已提交的帧之后释放Surface并退出，避免在绘制过程中释放
+        handler.removeCallbacks(mRenderRunnable);
+        final Handler renderHandler = handler;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSurface = null;
+                releaseRenderResources();
+                surface.release();
+                renderHandler.getLooper().quit();
+            }
+        });
+        return false;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+    }
+
+    /**
+     * 请求渲染线程绘制一帧，已有未处理的请求或处于批量修改中时直接返回
+     */
+    private void requestFrame() {
+        synchronized (mLock) {
+            if (mUpdateDepth == 0 && mRenderHandler != null && !mIsFrameRequested) {
+                mIsFrameRequested = true;
+                mRenderHandler.post(mRenderRunnable);
+            }
+        }
+    }
+
+    /**
+     * 开始批量修改，在对应的endUpdate之前不请求绘制
+     */
+    public void beginUpdate() {
+        synchronized (mLock) {
+            mUpdateDepth++;
+        }
+    }
+
+    /**
+     * 结束批量修改，最外层调用时请求绘制一帧
+     */
+    public void endUpdate() {
+        synchronized (mLock) {
+            if (mUpdateDepth == 0 || --mUpdateDepth > 0) {
+                return;
+            }
+        }
+        requestFrame();
+    }
+
+    /**
+     * 设置主题
+     *
+     * @param goTheme
+     */
+    public void setGoTheme(GoTheme goTheme) {
+        // 使用主题缓存的编译结果，与共享同一主题的BoardView及ThumbnailRenderer共用纹理缓存
+        GoTheme.RenderSpec renderSpec = goTheme.getRenderSpec();
+        synchronized (mLock) {
+            mGoTheme = goTheme;
+            mRenderSpec = renderSpec;
+        }
+        requestFrame();
+    }
+
+    public GoTheme getGoTheme() {
+        checkGoTheme();
+        return mGoTheme;
+    }
+
+    private void checkGoTheme() {
+        if (mGoTheme == null) {
+            GoTheme.DrawableCache drawableCache = new GoTheme.DrawableCache(getContext(), (int) (Runtime.getRuntime().maxMemory() / 32));
+            setGoTheme(new MonochromeTheme(drawableCache)); // 默认使用极简主题
+        }
+    }
+
+    /**
+     * 设置棋盘大小，会清空棋盘
+     *
+     * @param boardSize
+     * @throws IllegalArgumentException 棋盘大小小于1或大于Zobrist.MAX_BOARD_SIZE
+     */
+    public void setBoardSize(int boardSize) {
+        Zobrist.checkBoardSize(boardSize);
+        synchronized (mLock) {
+            mBoardSize = boardSize;
+            mStones = new Stone[boardSize * boardSize];
+            mNumberKeys = new long[mStones.length];
+            mStoneCount = 0;
+            mHighlightStoneIndex = -1;
+            mHighlightIntersection = null;
+            mVersion++;
+        }
+        mSquareSize = Math.round(Math.min(getWidth(), getHeight()) * 1f / (boardSize + 1));
+        requestFrame();
+    }
+
+    public int getBoardSize() {
+        return mBoardSize;
+    }
+
+    public void setStoneSpace(int stoneSpace) {
+        synchronized (mLock) {
+            mStoneSpace = stoneSpace;
+        }
+        requestFrame();
+    }
+
+    public int getStoneSpace() {
+        return mStoneSpace;
+    }
+
+    public void setShowCoordinate(boolean isShowCoordinate) {
+        synchronized (mLock) {
+            mIsShowCoordinate = isShowCoordinate;
+        }
+        requestFrame();
+    }
+
+    public boolean isShowCoordinate() {
+        return mIsShowCoordinate;
+    }
+
+    public void setShowHighlightCoordinates(boolean showHighlightCoordinates) {
+        synchronized (mLock) {
+            mIsShowHighlightCoordinates = showHighlightCoordinates;
+        }
+        requestFrame();
+    }
+
+    public boolean isShowHighlightCoordinates() {
+        return mIsShowHighlightCoordinates;
+    }
+
+    /**
+     * 设置手数显示方式，取值与BoardView的DRAW_NUMBER_STYLE_*相同
+     *
+     * @param drawNumberStyle
+     */
+    public void setDrawNumberStyle(int drawNumberStyle) {
+        synchronized (mLock) {
+            mDrawNumberStyle = drawNumberStyle;
+        }
+        requestFrame();
+    }
+
+    public int getDrawNumberStyle() {
+        return mDrawNumberStyle;
+    }
+
+    /**
+     * 设置DRAW_NUMBER_STYLE_LAST_N方式下显示手数的棋子数
+     *
+     * @param count
+     */
+    public void setDrawNumberCount(int count) {
+        synchronized (mLock) {
+            mDrawNumberCount = Math.max(0, count);
+        }
+        requestFrame();
+    }
+
+    public int getDrawNumberCount() {
+        return mDrawNumberCount;
+    }
+
+    private boolean isInBoard(Intersection intersection) {
+        return intersection != null && intersection.x >= 0 && intersection.x < mBoardSize
+                && intersection.y >= 0 && intersection.y < mBoardSize;
+    }
+
+    /**
+     * 在锁内放置棋子，同一交叉点已有棋子时替换
+     *
+     * @param stone
+     */
+    private void putStoneLocked(Stone stone) {
+        int index = stone.intersection.x + stone.intersection.y * mBoardSize;
+        if (mStones[index] == null) {
+            mStoneCount++;
+        } else if (index == mHighlightStoneIndex) {
+            mHighlightStoneIndex = -1;
+        }
+        // 复制一份，调用方之后修改传入的Stone不会影响渲染线程中的快照
+        Stone copy = new Stone();
+        copy.color = stone.color;
+        copy.intersection = stone.intersection;
+        copy.number = stone.number;
+        mStones[index] = copy;
+        mNumberKeys[index] = ((long) stone.number << 32) | (mNumberSequence++ & 0xFFFFFFFFL);
+    }
+
+    private void removeStoneLocked(int index) {
+        if (mStones[index] != null) {
+            mStones[index] = null;
+            mStoneCount--;
+            if (index == mHighlightStoneIndex) {
+                mHighlightStoneIndex = -1;
+            }
+        }
+    }
+
+    /**
+     * 添加棋子，同一交叉点已有棋子时替换
+     *
+     * @param stone
+     */
+    public void addStone(Stone stone) {
+        synchronized (mLock) {
+            if (!isInBoard(stone.intersection)) {
+                return;
+            }
+            putStoneLocked(stone);
+            mVersion++;
+        }
+        requestFrame();
+    }
+
+    /**
+     * 删除交叉点上的棋子
+     *
+     * @param intersection
+     */
+    public void removeStone(Intersection intersection) {
+        synchronized (mLock) {
+            if (!isInBoard(intersection)) {
+                return;
+            }
+            removeStoneLocked(intersection.x + intersection.y * mBoardSize);
+            mVersion++;
+        }
+        requestFrame();
+    }
+
+    /**
+     * 批量删除交叉点上的棋子，如提子
+     *
+     * @param intersections
+     */
+    public void removeStonesAt(Collection<Intersection> intersections) {
+        synchronized (mLock) {
+            for (Intersection intersection : intersections) {
+                if (isInBoard(intersection)) {
+                    removeStoneLocked(intersection.x + intersection.y * mBoardSize);
+                }
+            }
+            mVersion++;
+        }
+        requestFrame();
+    }
+
+    /**
+     * 清空棋盘
+     */
+    public void reset() {
+        synchronized (mLock) {
+            Arrays.fill(mStones, null);
+            mStoneCount = 0;
+            mHighlightStoneIndex = -1;
+            mHighlightIntersection = null;
+            mVersion++;
+        }
+        requestFrame();
+    }
+
+    /**
+     * 显示指定局面，棋子手数为0
+     *
+     * @param state
+     */
+    public void setPosition(BoardState state) {
+        if (state.getBoardSize() != mBoardSize) {
+            setBoardSize(state.getBoardSize());
+        }
+        synchronized (mLock) {
+            for (int y = 0; y < mBoardSize; y++) {
+                for (int x = 0; x < mBoardSize; x++) {
+                    int index = x + y * mBoardSize;
+                    StoneColor color = state.getColor(x, y);
+                    if (color == null) {
+                        removeStoneLocked(index);
+                    } else if (mStones[index] == null || mStones[index].color != color) {
+                        Stone stone = new Stone();
+                        stone.color = color;
+                        stone.intersection = Intersection.valueOf(x, y);
+                        putStoneLocked(stone);
+                    }
+                }
+            }
+            mVersion++;
+        }
+        requestFrame();
+    }
+
+    /**
+     * 显示指定的棋子集合，替换棋盘上的所有棋子
+     *
+     * @param stones
+     */
+    public void setPosition(Collection<Stone> stones) {
+        synchronized (mLock) {
+            Arrays.fill(mStones, null);
+            mStoneCount = 0;
+            mHighlightStoneIndex = -1;
+            for (Stone stone : stones) {
+                if (isInBoard(stone.intersection)) {
+                    putStoneLocked(stone);
+                }
+            }
+            mVersion++;
+        }
+        requestFrame();
+    }
+
+    /**
+     * 获取交叉点上的棋子
+     *
+     * @param x
+     * @param y
+     * @return 没有棋子时返回null
+     */
+    public Stone getStone(int x, int y) {
+        synchronized (mLock) {
+            if (x < 0 || x >= mBoardSize || y < 0 || y >= mBoardSize) {
+                return null;
+            }
+            return mStones[x + y * mBoardSize];
+        }
+    }
+
+    public int getStoneCount() {
+        return mStoneCount;
+    }
+
+    /**
+     * 获取当前棋盘局面
+     *
+     * @return
+     */
+    public BoardState getBoardState() {
+        byte[] colors;
+        int boardSize;
+        synchronized (mLock) {
+            boardSize = mBoardSize;
+            colors = new byte[mStones.length];
+            for (int i = 0; i < mStones.length; i++) {
+                if (mStones[i] != null) {
+                    colors[i] = mStones[i].color == StoneColor.BLACK ? (byte) 1 : (byte) 2;
+                }
+            }
+        }
+        return BoardState.valueOf(boardSize, colors, (byte) 1, (byte) 2);
+    }
+
+    /**
+     * 设置高亮棋子
+     *
+     * @param stone 为null时取消高亮
+     */
+    public void setHighlightStone(Stone stone) {
+        synchronized (mLock) {
+            if (stone != null && isInBoard(stone.intersection)
+                    && mStones[stone.intersection.x + stone.intersection.y * mBoardSize] != null) {
+                mHighlightStoneIndex = stone.intersection.x + stone.intersection.y * mBoardSize;
+            } else {
+                mHighlightStoneIndex = -1;
+            }
+        }
+        requestFrame();
+    }
+
+    public Stone getHighlightStone() {
+        synchronized (mLock) {
+            return mHighlightStoneIndex >= 0 ? mStones[mHighlightStoneIndex] : null;
+        }
+    }
+
+    /**
+     * 设置高亮交叉点
+     *
+     * @param intersection 为null时取消高亮
+     */
+    public void setHighlightIntersection(Intersection intersection) {
+        synchronized (mLock) {
+            mHighlightIntersection = intersection;
+        }
+        requestFrame();
+    }
+
+    public Intersection getHighlightIntersection() {
+        return mHighlightIntersection;
+    }
+
+    /**
+     * 根据传入的坐标查找最近的交叉点
+     *
+     * @param x
+     * @param y
+     * @return
+     */
+    public Intersection getNearestIntersection(float x, float y) {
+        if (mSquareSize <= 0) {
+            return null;
+        }
+        int col = Math.round(x / mSquareSize) - 1;
+        int row = Math.round(y / mSquareSize) - 1;
+        if (col < 0 || col >= mBoardSize
+                || row < 0 || row >= mBoardSize) {
+            return null;
+        }
+        return Intersection.valueOf(col, row);
+    }
+
+    /**
+     * 在渲染线程中绘制一帧
+     */
+    private void renderFrame() {
+        if (mSurface == null || mWidth <= 0 || mHeight <= 0) {
+            synchronized (mLock) {
+                mIsFrameRequested = false;
+            }
+            return;
+        }
+
+        int boardSize;
+        int stoneSpace;
+        boolean showCoordinate;
+        boolean showHighlightCoordinates;
+        int drawNumberStyle;
+        int drawNumberCount;
+        GoTheme goTheme;
+        GoTheme.RenderSpec renderSpec;
+        int highlightStoneIndex;
+        Intersection highlightIntersection;
+        synchronized (mLock) {
+            mIsFrameRequested = false;
+            if (mUpdateDepth > 0) {
+                // 批量修改尚未结束，由endUpdate重新请求，保证不会画出修改到一半的局面
+                return;
+            }
+            boardSize = mBoardSize;
+            stoneSpace = mStoneSpace;
+            showCoordinate = mIsShowCoordinate;
+            showHighlightCoordinates = mIsShowHighlightCoordinates;
+            drawNumberStyle = mDrawNumberStyle;
+            drawNumberCount = mDrawNumberCount;
+            goTheme = mGoTheme;
+            renderSpec = mRenderSpec;
+            highlightStoneIndex = mHighlightStoneIndex;
+            highlightIntersection = mHighlightIntersection;
+            if (mRenderVersion != mVersion) {
+                if (mRenderStones.length != mStones.length) {
+                    mRenderStones = new Stone[mStones.length];
+                    mRenderNumberKeys = new long[mStones.length];
+                }
+                System.arraycopy(mStones, 0, mRenderStones, 0, mStones.length);
+                System.arraycopy(mNumberKeys, 0, mRenderNumberKeys, 0, mNumberKeys.length);
+                mRenderVersion = mVersion;
+            }
+        }
+
+        int squareSize = Math.round(Math.min(mWidth, mHeight) * 1f / (boardSize + 1));
+        updateStoneDrawables(goTheme, renderSpec, boardSize, stoneSpace, squareSize, drawNumberStyle, drawNumberCount, highlightStoneIndex);
+
+        Canvas canvas = lockCanvas();
+        if (canvas == null) {
+            return;
+        }
+        try {
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+
+            // 绘制棋盘
+            mBoardRenderer.setSize(boardSize, squareSize);
+            if (!isBoardCacheValid(boardSize, squareSize, showCoordinate, renderSpec.mBoardSpec)) {
+                rebuildBoardCache(boardSize, squareSize, showCoordinate, renderSpec.mBoardSpec);
+            }
+            if (mBoardCacheBitmap != null) {
+                canvas.drawBitmap(mBoardCacheBitmap, 0, 0, null);
+            } else {
+                // 缓存创建失败时直接绘制
+                mBoardRenderer.drawStaticBoard(canvas, renderSpec.mBoardSpec, mWidth, mHeight, showCoordinate);
+            }
+            if (showHighlightCoordinates && highlightIntersection != null) {
+                mBoardRenderer.drawCoordinates(canvas, highlightIntersection, Color.RED);
+            }
+
+            // 绘制棋子阴影
+            if (renderSpec.mBoardSpec.mStoneShadowOn) {
+                drawStoneShadow(canvas, boardSize, squareSize, stoneSpace);
+            }
+
+            // 绘制棋子
+            for (StoneDrawable drawable : mRenderDrawables) {
+                if (drawable != null) {
+                    drawable.draw(canvas);
+                }
+            }
+
+            // 绘制高亮交叉点
+            if (highlightIntersection != null) {
+                int left = Math.round((highlightIntersection.x + 0.5f) * squareSize);
+                int top = Math.round((highlightIntersection.y + 0.5f) * squareSize);
+                int right = Math.round((highlightIntersection.x + 1.5f) * squareSize);
+                int bottom = Math.round((highlightIntersection.y + 1.5f) * squareSize);
+                canvas.drawRect(left, top, right, bottom, mHighlightPaint);
+            }
+        } finally {
+            unlockCanvasAndPost(canvas);
+        }
+    }
+
+    /**
+     * 按快照同步每个交叉点的StoneDrawable，棋子未变化的交叉点复用原有对象
+     */
+    private void updateStoneDrawables(GoTheme goTheme, GoTheme.RenderSpec renderSpec, int boardSize, int stoneSpace,
+                                      int squareSize, int drawNumberStyle, int drawNumberCount, int highlightStoneIndex) {
+        if (mRenderDrawables.length != mRenderStones.length || mRenderDrawableSpec != renderSpec) {
+            mRenderDrawables = new StoneDrawable[mRenderStones.length];
+            mRenderDrawableSpec = renderSpec;
+        }
+        // 只在棋子尺寸或主题变化时重新预缩放纹理
+        int textureSize = StoneDrawable.getTextureSize(squareSize, stoneSpace);
+        if (mRenderBlackTextures == null || !mRenderBlackTextures.matches(renderSpec.mBlackStoneSpec, textureSize)
+                || !mRenderWhiteTextures.matches(renderSpec.mWhiteStoneSpec, textureSize)) {
+            mRenderBlackTextures = renderSpec.mBlackStoneSpec.createScaledTextures(textureSize);
+            mRenderWhiteTextures = renderSpec.mWhiteStoneSpec.createScaledTextures(textureSize);
+        }
+
+        // 与BoardView一致，按手数及添加顺序选出最后N手
+        long threshold = Long.MAX_VALUE;
+        int lastCount = drawNumberStyle == BoardView.DRAW_NUMBER_STYLE_LAST ? 1
+                : drawNumberStyle == BoardView.DRAW_NUMBER_STYLE_LAST_N ? drawNumberCount : 0;
+        if (lastCount > 0) {
+            if (mSortedKeys.length != mRenderStones.length) {
+                mSortedKeys = new long[mRenderStones.length];
+            }
+            int count = 0;
+            for (int i = 0; i < mRenderStones.length; i++) {
+                if (mRenderStones[i] != null) {
+                    mSortedKeys[count++] = mRenderNumberKeys[i];
+                }
+            }
+            Arrays.sort(mSortedKeys, 0, count);
+            threshold = count > 0 ? mSortedKeys[Math.max(0, count - lastCount)] : Long.MAX_VALUE;
+        }
+
+        for (int i = 0; i < mRenderStones.length; i++) {
+            Stone stone = mRenderStones[i];
+            StoneDrawable drawable = mRenderDrawables[i];
+            if (stone == null) {
+                mRenderDrawables[i] = null;
+                continue;
+            }
+            if (drawable == null || drawable.getStone() != stone) {
+                drawable = new StoneDrawable();
+                drawable.setStone(stone);
+                if (stone.color == StoneColor.BLACK) {
+                    drawable.setStoneTheme(goTheme.mBlackStoneTheme, renderSpec.mBlackStoneSpec);
+                } else {
+                    drawable.setStoneTheme(goTheme.mWhiteStoneTheme, renderSpec.mWhiteStoneSpec);
+                }
+                drawable.setMarkTheme(goTheme.mMarkTheme, renderSpec.mMarkSpec);
+                mRenderDrawables[i] = drawable;
+            }
+            drawable.setStoneSpace(stoneSpace);
+            drawable.setScaledTextures(stone.color == StoneColor.BLACK ? mRenderBlackTextures : mRenderWhiteTextures);
+            int left = Math.round((i % boardSize + 0.5f) * squareSize);
+            int top = Math.round((i / boardSize + 0.5f) * squareSize);
+            drawable.setBounds(left, top, left + squareSize, top + squareSize);
+            switch (drawNumberStyle) {
+                case BoardView.DRAW_NUMBER_STYLE_ALL:
+                    drawable.setDrawNumber(true);
+                    break;
+                case BoardView.DRAW_NUMBER_STYLE_LAST:
+                case BoardView.DRAW_NUMBER_STYLE_LAST_N:
+                    drawable.setDrawNumber(mRenderNumberKeys[i] >= threshold);
+                    break;
+                default:
+                    drawable.setDrawNumber(false);
+                    break;
+            }
+            drawable.setHighlight(i == highlightStoneIndex);
+        }
+    }
+
+    private boolean isBoardCacheValid(int boardSize, int squareSize, boolean showCoordinate, GoTheme.BoardSpec boardSpec) {
+        return mBoardCacheBitmap != null && !mBoardCacheBitmap.isRecycled()
+                && mBoardCacheBitmap.getWidth() == mWidth
+                && mBoardCacheBitmap.getHeight() == mHeight
+                && mCachedSquareSize == squareSize
+                && mCachedBoardSize == boardSize
+                && mCachedShowCoordinate == showCoordinate
+                && mCachedBoardSpec == boardSpec;
+    }
+
+    private void rebuildBoardCache(int boardSize, int squareSize, boolean showCoordinate, GoTheme.BoardSpec boardSpec) {
+        if (mBoardCacheBitmap == null || mBoardCacheBitmap.isRecycled()
+                || mBoardCacheBitmap.getWidth() != mWidth || mBoardCacheBitmap.getHeight() != mHeight) {
+            if (mBoardCacheBitmap != null) {
+                mBoardCacheBitmap.recycle();
+                mBoardCacheBitmap = null;
+            }
+            try {
+                mBoardCacheBitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                e.printStackTrace();
+                mCachedBoardSpec = null;
+                return;
+            }
+        } else {
+            mBoardCacheBitmap.eraseColor(Color.TRANSPARENT);
+        }
+        mBoardRenderer.drawStaticBoard(new Canvas(mBoardCacheBitmap), boardSpec, mWidth, mHeight, showCoordinate);
+
+        mCachedSquareSize = squareSize;
+        mCachedBoardSize = boardSize;
+        mCachedShowCoordinate = showCoordinate;
+        mCachedBoardSpec = boardSpec;
+    }
+
+    /**
+     * 绘制棋子阴影，偏移量与BoardView相同
+     */
+    private void drawStoneShadow(Canvas canvas, int boardSize, int squareSize, int stoneSpace) {
+        if (mShadowBitmap == null || mShadowBitmap.isRecycled()) {
+            return;
+        }
+        int shadowSize = Math.round((squareSize - stoneSpace) / 3f);
+        int leftOffset = Math.round(shadowSize * 2 / 5f);
+        int topOffset = Math.round(shadowSize / 5f);
+        int spriteWidth = squareSize + leftOffset + Math.round(shadowSize * 3 / 5f);
+        int spriteHeight = squareSize + topOffset + Math.round(shadowSize * 4 / 5f);
+        if (mShadowSprite == null || mShadowSprite.getWidth() != spriteWidth || mShadowSprite.getHeight() != spriteHeight) {
+            try {
+                mShadowSprite = Bitmap.createScaledBitmap(mShadowBitmap, spriteWidth, spriteHeight, true);
+            } catch (OutOfMemoryError e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        for (int i = 0; i < mRenderStones.length; i++) {
+            if (mRenderStones[i] != null) {
+                int left = Math.round((i % boardSize + 0.5f) * squareSize) - leftOffset;
+                int top = Math.round((i / boardSize + 0.5f) * squareSize) - topOffset;
+                canvas.drawBitmap(mShadowSprite, left, top, null);
+            }
+        }
+    }
+
+    private void releaseRenderResources() {
+        if (mBoardCacheBitmap != null) {
+            mBoardCacheBitmap.recycle();
+            mBoardCacheBitmap = null;
+        }
+        mCachedBoardSpec = null;
+        mShadowSprite = null;
+        mRenderDrawables = new StoneDrawable[0];
+        mRenderBlackTextures = null;
+        mRenderWhiteTextures = null;
+        mRenderVersion = -1;
+    }
+}
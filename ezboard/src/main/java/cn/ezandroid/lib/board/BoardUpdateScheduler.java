@@ -0,0 +1,426 @@
+package cn.ezandroid.lib.board;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * BoardView更新合并调度器
+ * <p>
+ * 引擎分析或直播数据等来源的更新可以在任意线程中提交，调度器对棋子、分析叠加层及高亮三类数据分别只保留最新一次未应用的更新，
+ * 在主线程的下一帧(Choreographer回调，API 16以下使用约16ms的定时消息)中一次性批量应用到BoardView；
+ * 被更新的数据覆盖而未应用的更新计为合并，调用clear或release时丢弃的更新计为丢弃
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class BoardUpdateScheduler {
+
+    private static final long FRAME_INTERVAL = 16; // API 16以下的帧间隔，毫秒
+
+    private final BoardView mBoardView;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Object mLock = new Object();
+
+    // 棋子层，mPendingState与mPendingStones只有一个有效
+    private boolean mHasPendingStones;
+    private BoardState mPendingState;
+    private List<Stone> mPendingStones;
+
+    // 分析叠加层，提交时复制到待应用缓冲区，应用时与应用缓冲区交换，稳定后不再分配数组
+    private boolean mHasPendingAnalysis;
+    private AnalysisFrame mPendingAnalysis = new AnalysisFrame();
+    private AnalysisFrame mApplyingAnalysis = new AnalysisFrame();
+
+    // 高亮层
+    private boolean mHasPendingHighlightStone;
+    private Stone mPendingHighlightStone;
+    private boolean mHasPendingHighlightIntersection;
+    private Intersection mPendingHighlightIntersection;
+
+    private boolean mIsFrameScheduled;
+    private boolean mIsReleased;
+
+    // 统计
+    private long mSubmittedCount;
+    private long mCoalescedCount;
+    private long mDroppedCount;
+    private long mFrameCount;
+
+    private final Runnable mScheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            postFrame();
+        }
+    };
+
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            doFrame();
+        }
+    };
+
+    private Choreographer.FrameCallback mFrameCallback;
+
+    /**
+     * 分析数据缓冲区
+     */
+    private static class AnalysisFrame {
+
+        float[] mOwnership = new float[0];
+        float[] mWinRates = new float[0];
+        int[] mVisits = new int[0];
+        boolean mHasOwnership;
+        boolean mHasWinRates;
+        boolean mHasVisits;
+
+        void set(float[] ownership, float[] winRates, int[] visits) {
+            mHasOwnership = ownership != null;
+            if (mHasOwnership) {
+                mOwnership = copy(ownership, mOwnership);
+            }
+            mHasWinRates = winRates != null;
+            if (mHasWinRates) {
+                mWinRates = copy(winRates, mWinRates);
+            }
+            mHasVisits = visits != null;
+            if (mHasVisits) {
+                if (mVisits.length != visits.length) {
+                    mVisits = new int[visits.length];
+                }
+                System.arraycopy(visits, 0, mVisits, 0, visits.length);
+            }
+        }
+
+        private static float[] copy(float[] src, float[] dst) {
+            if (dst.length != src.length) {
+                dst = new float[src.length];
+            }
+            System.arraycopy(src, 0, dst, 0, src.length);
+            return dst;
+        }
+    }
+
+    public BoardUpdateScheduler(BoardView boardView) {
+        mBoardView = boardView;
+    }
+
+    /**
+     * 提交局面，可以在任意线程中调用
+     *
+     * @param state
+     */
+    public void setPosition(BoardState state) {
+        synchronized (mLock) {
+            if (mIsReleased) {
+                mDroppedCount++;
+                return;
+            }
+            onSubmitLocked(mHasPendingStones);
+            mHasPendingStones = true;
+            mPendingState = state;
+            mPendingStones = null;
+            scheduleFrameLocked();
+        }
+    }
+
+    /**
+     * 提交棋子集合，替换棋盘上的所有棋子，可以在任意线程中调用
+     *
+     * @param stones 会被复制，之后修改集合不影响已提交的内容
+     */
+    public void setPosition(Collection<Stone> stones) {
+        List<Stone> copy = new ArrayList<>(stones);
+        synchronized (mLock) {
+            if (mIsReleased) {
+                mDroppedCount++;
+                return;
+            }
+            onSubmitLocked(mHasPendingStones);
+            mHasPendingStones = true;
+            mPendingState = null;
+            mPendingStones = copy;
+            scheduleFrameLocked();
+        }
+    }
+
+    /**
+     * 提交分析数据，可以在任意线程中调用，参数含义同BoardView.setAnalysisData
+     *
+     * @param ownership 会被复制，调用方可以立即复用数组
+     * @param winRates  会被复制，调用方可以立即复用数组
+     * @param visits    会被复制，调用方可以立即复用数组
+     */
+    public void setAnalysisData(float[] ownership, float[] winRates, int[] visits) {
+        synchronized (mLock) {
+            if (mIsReleased) {
+                mDroppedCount++;
+                return;
+            }
+            onSubmitLocked(mHasPendingAnalysis);
+            mHasPendingAnalysis = true;
+            mPendingAnalysis.set(ownership, winRates, visits);
+            scheduleFrameLocked();
+        }
+    }
+
+    /**
+     * 提交清除分析数据，可以在任意线程中调用
+     */
+    public void clearAnalysisData() {
+        setAnalysisData(null, null, null);
+    }
+
+    /**
+     * 提交高亮棋子，可以在任意线程中调用
+     *
+     * @param stone 为null时取消高亮
+     */
+    public void setHighlightStone(Stone stone) {
+        synchronized (mLock) {
+            if (mIsReleased) {
+                mDroppedCount++;
+                return;
+            }
+            onSubmitLocked(mHasPendingHighlightStone);
+            mHasPendingHighlightStone = true;
+            mPendingHighlightStone = stone;
+            scheduleFrameLocked();
+        }
+    }
+
+    /**
+     * 提交高亮交叉点，可以在任意线程中调用
+     *
+     * @param intersection 为null时取消高亮
+     */
+    public void setHighlightIntersection(Intersection intersection) {
+        synchronized (mLock) {
+            if (mIsReleased) {
+                mDroppedCount++;
+                return;
+            }
+            onSubmitLocked(mHasPendingHighlightIntersection);
+            mHasPendingHighlightIntersection = true;
+            mPendingHighlightIntersection = intersection;
+            scheduleFrameLocked();
+        }
+    }
+
+    /**
+     * 丢弃所有尚未应用的更新
+     */
+    public void clear() {
+        synchronized (mLock) {
+            dropPendingLocked();
+        }
+    }
+
+    /**
+     * 丢弃所有尚未应用的更新并停止调度，之后提交的更新都会被丢弃
+     */
+    public void release() {
+        synchronized (mLock) {
+            mIsReleased = true;
+            dropPendingLocked();
+        }
+        mMainHandler.removeCallbacks(mScheduleRunnable);
+        mMainHandler.removeCallbacks(mFrameRunnable);
+        if (mFrameCallback != null) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+                }
+            });
+        }
+    }
+
+    /**
+     * 获取提交的更新数
+     *
+     * @return
+     */
+    public long getSubmittedCount() {
+        synchronized (mLock) {
+            return mSubmittedCount;
+        }
+    }
+
+    /**
+     * 获取被同一层更新的数据覆盖而未应用的更新数
+     *
+     * @return
+     */
+    public long getCoalescedCount() {
+        synchronized (mLock) {
+            return mCoalescedCount;
+        }
+    }
+
+    /**
+     * 获取因clear、release而丢弃的更新数
+     *
+     * @return
+     */
+    public long getDroppedCount() {
+        synchronized (mLock) {
+            return mDroppedCount;
+        }
+    }
+
+    /**
+     * 获取应用更新的帧数
+     *
+     * @return
+     */
+    public long getFrameCount() {
+        synchronized (mLock) {
+            return mFrameCount;
+        }
+    }
+
+    /**
+     * 重置统计
+     */
+    public void resetCounters() {
+        synchronized (mLock) {
+            mSubmittedCount = 0;
+            mCoalescedCount = 0;
+            mDroppedCount = 0;
+            mFrameCount = 0;
+        }
+    }
+
+    private void onSubmitLocked(boolean hasPending) {
+        mSubmittedCount++;
+        if (hasPending) {
+            mCoalescedCount++;
+        }
+    }
+
+    private void dropPendingLocked() {
+        int count = (mHasPendingStones ? 1 : 0) + (mHasPendingAnalysis ? 1 : 0)
+                + (mHasPendingHighlightStone ? 1 : 0) + (mHasPendingHighlightIntersection ? 1 : 0);
+        mDroppedCount += count;
+        mHasPendingStones = false;
+        mPendingState = null;
+        mPendingStones = null;
+        mHasPendingAnalysis = false;
+        mHasPendingHighlightStone = false;
+        mPendingHighlightStone = null;
+        mHasPendingHighlightIntersection = false;
+        mPendingHighlightIntersection = null;
+    }
+
+    private void scheduleFrameLocked() {
+        if (mIsFrameScheduled) {
+            return;
+        }
+        mIsFrameScheduled = true;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            postFrame();
+        } else {
+            mMainHandler.post(mScheduleRunnable);
+        }
+    }
+
+    /**
+     * 在主线程中请求下一帧回调
+     */
+    private void postFrame() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (mFrameCallback == null) {
+                mFrameCallback = new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        BoardUpdateScheduler.this.doFrame();
+                    }
+                };
+            }
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        } else {
+            mMainHandler.postDelayed(mFrameRunnable, FRAME_INTERVAL);
+        }
+    }
+
+    /**
+     * 在主线程中取出各层最新的更新并批量应用
+     */
+    private void doFrame() {
+        boolean hasStones;
+        BoardState state;
+        List<Stone> stones;
+        boolean hasAnalysis;
+        boolean hasHighlightStone;
+        Stone highlightStone;
+        boolean hasHighlightIntersection;
+        Intersection highlightIntersection;
+        synchronized (mLock) {
+            mIsFrameScheduled = false;
+            if (mIsReleased) {
+                return;
+            }
+            hasStones = mHasPendingStones;
+            state = mPendingState;
+            stones = mPendingStones;
+            hasAnalysis = mHasPendingAnalysis;
+            if (hasAnalysis) {
+                AnalysisFrame frame = mApplyingAnalysis;
+                mApplyingAnalysis = mPendingAnalysis;
+                mPendingAnalysis = frame;
+            }
+            hasHighlightStone = mHasPendingHighlightStone;
+            highlightStone = mPendingHighlightStone;
+            hasHighlightIntersection = mHasPendingHighlightIntersection;
+            highlightIntersection = mPendingHighlightIntersection;
+
+            mHasPendingStones = false;
+            mPendingState = null;
+            mPendingStones = null;
+            mHasPendingAnalysis = false;
+            mHasPendingHighlightStone = false;
+            mPendingHighlightStone = null;
+            mHasPendingHighlightIntersection = false;
+            mPendingHighlightIntersection = null;
+            if (!hasStones && !hasAnalysis && !hasHighlightStone && !hasHighlightIntersection) {
+                return;
+            }
+            mFrameCount++;
+        }
+
+        mBoardView.beginUpdate();
+        if (hasStones) {
+            if (state != null) {
+                mBoardView.setPosition(state);
+            } else {
+                mBoardView.setPosition(stones);
+            }
+        }
+        if (hasHighlightStone) {
+            // 棋子层更新后重新查找同一交叉点上的棋子，避免高亮已被替换的旧棋子
+            Stone stone = null;
+            if (highlightStone != null && highlightStone.intersection != null) {
+                stone = mBoardView.getStone(highlightStone.intersection);
+            }
+            mBoardView.setHighlightStone(stone);
+        }
+        if (hasHighlightIntersection) {
+            mBoardView.setHighlightIntersection(highlightIntersection);
+        }
+        if (hasAnalysis) {
+            // 应用缓冲区只在主线程中读取，提交线程此时写入的是另一个缓冲区
+            AnalysisFrame frame = mApplyingAnalysis;
+            mBoardView.setAnalysisData(frame.mHasOwnership ? frame.mOwnership : null,
+                    frame.mHasWinRates ? frame.mWinRates : null,
+                    frame.mHasVisits ? frame.mVisits : null);
+        }
+        mBoardView.endUpdate();
+    }
+}
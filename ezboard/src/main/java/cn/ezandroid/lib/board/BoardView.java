@@ -2,21 +2,23 @@ package cn.ezandroid.lib.board;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
+import android.animation.ObjectAnimator;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.PorterDuff;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
 import android.widget.RelativeLayout;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.TreeMap;
 
 import cn.ezandroid.lib.board.theme.GoTheme;
 import cn.ezandroid.lib.board.theme.MonochromeTheme;
@@ -39,21 +41,78 @@ public class BoardView extends RelativeLayout {
 
     private boolean mIsShowCoordinate = true; // 是否显示坐标
 
-    private Map<Stone, StoneView> mStoneViewMap = new HashMap<>(); // StoneView映射图，用来根据Stone快速查找对应的StoneView
+    public static final int RENDER_MODE_VIEW = 0; // 每个棋子作为一个StoneView子控件显示
+    public static final int RENDER_MODE_CANVAS = 1; // 所有棋子由BoardView在同一次绘制中直接画到画布上
+
+    private int mRenderMode = RENDER_MODE_VIEW;
+
+    private static final byte COLOR_EMPTY = 0;
+    private static final byte COLOR_BLACK = 1;
+    private static final byte COLOR_WHITE = 2;
+
+    // 棋盘表，以交叉点索引(x + y * mBoardSize)存储，按交叉点查找、高亮及提子均为O(1)
+    private byte[] mStoneColors; // 棋子颜色
+    private int[] mStoneNumbers; // 棋子手数
+    private StoneDrawable[] mStoneSlots; // 棋子绘制对象
+    private StoneView[] mStoneViews; // 承载棋子的StoneView，仅在RENDER_MODE_VIEW模式下使用
+    private int mStoneCount;
+
+    private int mHighlightStoneIndex = -1; // 高亮棋子所在的交叉点索引
+
+    private List<StoneDrawable> mRemovingDrawables = new ArrayList<>(); // 正在执行消失动画的棋子，仅在RENDER_MODE_CANVAS模式下使用
 
     private Intersection mHighlightIntersection;
+    private int mHighlightX = -1; // 当前高亮区域的坐标，用来计算需要重绘的区域
+    private int mHighlightY = -1;
 
     private boolean mIsShowHighlightCoordinates = true;
 
     public static final int DRAW_NUMBER_STYLE_DISABLE = 0;
     public static final int DRAW_NUMBER_STYLE_LAST = 1;
     public static final int DRAW_NUMBER_STYLE_ALL = 2;
+    public static final int DRAW_NUMBER_STYLE_LAST_N = 3; // 显示最后N手，N由setDrawNumberCount设置
 
     private int mDrawNumberStyle = DRAW_NUMBER_STYLE_DISABLE;
 
+    private int mDrawNumberCount = 1; // DRAW_NUMBER_STYLE_LAST_N模式下显示手数的棋子数
+
+    private TreeMap<Long, StoneDrawable> mNumberIndex = new TreeMap<>(); // 按手数排序的棋子索引，用来快速查找最后N手
+    private int mNumberSequence; // 手数相同时按添加顺序排序
+
+    // 批量修改状态
+    private int mUpdateDepth;
+    private int mImplicitUpdateDepth; // addStone内部为单次修改开启的批量层数，不影响手数的增量更新
+    private boolean mIsBoardChangePending;
+    private boolean mIsDrawNumberDirty;
+    private boolean mIsLayoutPending;
+    private Rect mPendingDirtyRect = new Rect();
+
+    private static final int HIGHLIGHT_STROKE_WIDTH = 3; // 高亮框线宽
+
     private GoTheme mGoTheme;
+    private GoTheme.RenderSpec mRenderSpec; // 编译后的主题，绘制时直接读取
+    private GoTheme.ScaledTextures mBlackScaledTextures; // 按当前棋子尺寸预缩放的黑子纹理，尺寸或主题变化时重建
+    private GoTheme.ScaledTextures mWhiteScaledTextures; // 按当前棋子尺寸预缩放的白子纹理，尺寸或主题变化时重建
 
     private Bitmap mShadowBitmap; // 阴影图
+    private Bitmap mShadowSprite; // 预缩放到当前格子尺寸的阴影图
+
+    private Bitmap mShadowLayerBitmap; // 阴影层，增删棋子时增量更新
+    private Canvas mShadowLayerCanvas;
+    private boolean mIsShadowLayerValid;
+    private int mShadowSquareSize;
+    private int mShadowStoneSpace;
+
+    private Bitmap mBoardCacheBitmap; // 棋盘静态层缓存（背景、棋盘线、星位及坐标）
+    private int mCachedSquareSize;
+    private int mCachedBoardSize;
+    private boolean mCachedShowCoordinate;
+    private GoTheme.BoardSpec mCachedBoardSpec;
+
+    private final BoardRenderer mBoardRenderer = new BoardRenderer(); // 棋盘静态层绘制
+
+    private final AnalysisLayer mAnalysisLayer = new AnalysisLayer(); // 分析叠加层
+    private final Rect mAnalysisDirtyCells = new Rect();
 
     private List<OnBoardChangeListener> mBoardChangeListeners = new ArrayList<>();
 
@@ -62,6 +121,21 @@ public class BoardView extends RelativeLayout {
         void onBoardChanged();
     }
 
+    private List<OnBoardDeltaListener> mBoardDeltaListeners = new ArrayList<>();
+    private List<Stone> mPendingAddedStones = new ArrayList<>(); // 尚未通知的新增棋子
+    private List<Stone> mPendingRemovedStones = new ArrayList<>(); // 尚未通知的删除棋子
+
+    public interface OnBoardDeltaListener {
+
+        /**
+         * 棋盘内容变化，批量修改时在最外层endUpdate中只回调一次
+         *
+         * @param added   新增的棋子
+         * @param removed 删除的棋子
+         */
+        void onBoardDelta(List<Stone> added, List<Stone> removed);
+    }
+
     private List<OnHighlightStateChangeListener> mHighlightStateChangeListeners = new ArrayList<>();
 
     public interface OnHighlightStateChangeListener {
@@ -91,6 +165,16 @@ public class BoardView extends RelativeLayout {
         mBoardChangeListeners.remove(listener);
     }
 
+    public void addOnBoardDeltaListener(OnBoardDeltaListener listener) {
+        if (!mBoardDeltaListeners.contains(listener)) {
+            mBoardDeltaListeners.add(listener);
+        }
+    }
+
+    public void removeOnBoardDeltaListener(OnBoardDeltaListener listener) {
+        mBoardDeltaListeners.remove(listener);
+    }
+
     public void addOnHighlightStateChangeListener(OnHighlightStateChangeListener listener) {
         if (!mHighlightStateChangeListeners.contains(listener)) {
             mHighlightStateChangeListeners.add(listener);
@@ -142,8 +226,12 @@ public class BoardView extends RelativeLayout {
         int childHeightSize = getMeasuredHeight();
         int minSize = Math.min(childWidthSize, childHeightSize);
         mSquareSize = Math.round(minSize * 1f / (mBoardSize + 1));
+        updateScaledTextures();
 
-        for (StoneView view : mStoneViewMap.values()) {
+        for (StoneView view : mStoneViews) {
+            if (view == null) {
+                continue;
+            }
             Stone stone = view.getStone();
 
             LayoutParams params = (LayoutParams) view.getLayoutParams();
@@ -153,6 +241,164 @@ public class BoardView extends RelativeLayout {
             params.topMargin = Math.round((stone.intersection.y + 0.5f) * mSquareSize);
             view.setLayoutParams(params);
         }
+
+        if (mRenderMode == RENDER_MODE_CANVAS) {
+            for (StoneDrawable drawable : mStoneSlots) {
+                if (drawable != null) {
+                    layoutStoneDrawable(drawable);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按当前棋盘大小分配棋盘表
+     */
+    private void allocateStoneSlots() {
+        int count = mBoardSize * mBoardSize;
+        mStoneColors = new byte[count];
+        mStoneNumbers = new int[count];
+        mStoneSlots = new StoneDrawable[count];
+        mStoneViews = new StoneView[count];
+        mStoneCount = 0;
+        mHighlightStoneIndex = -1;
+    }
+
+    /**
+     * 判断交叉点是否在棋盘内
+     *
+     * @param x
+     * @param y
+     * @return
+     */
+    private boolean isInBoard(int x, int y) {
+        return x >= 0 && x < mBoardSize && y >= 0 && y < mBoardSize;
+    }
+
+    /**
+     * 将棋子放入棋盘表
+     *
+     * @param index
+     * @param drawable
+     */
+    private void putStoneSlot(int index, StoneDrawable drawable) {
+        Stone stone = drawable.getStone();
+        mStoneSlots[index] = drawable;
+        mStoneColors[index] = stone.color == StoneColor.BLACK ? COLOR_BLACK : COLOR_WHITE;
+        mStoneNumbers[index] = stone.number;
+        mStoneCount++;
+    }
+
+    /**
+     * 将棋子移出棋盘表
+     *
+     * @param index
+     */
+    private void clearStoneSlot(int index) {
+        mStoneSlots[index] = null;
+        mStoneViews[index] = null;
+        mStoneColors[index] = COLOR_EMPTY;
+        mStoneNumbers[index] = 0;
+        mStoneCount--;
+        if (mHighlightStoneIndex == index) {
+            mHighlightStoneIndex = -1;
+        }
+    }
+
+    /**
+     * 根据格子尺寸设置棋子绘制区域，仅在RENDER_MODE_CANVAS模式下使用
+     *
+     * @param drawable
+     */
+    private void layoutStoneDrawable(StoneDrawable drawable) {
+        Stone stone = drawable.getStone();
+        int left = Math.round((stone.intersection.x + 0.5f) * mSquareSize);
+        int top = Math.round((stone.intersection.y + 0.5f) * mSquareSize);
+        drawable.setBounds(left, top, left + mSquareSize, top + mSquareSize);
+    }
+
+    /**
+     * 创建承载棋子的StoneView并添加到棋盘，仅在RENDER_MODE_VIEW模式下使用
+     *
+     * @param drawable
+     * @return
+     */
+    private StoneView attachStoneView(StoneDrawable drawable) {
+        Stone stone = drawable.getStone();
+        StoneView stoneView = new StoneView(getContext(), drawable);
+
+        LayoutParams params = new LayoutParams(mSquareSize, mSquareSize);
+        params.leftMargin = Math.round((stone.intersection.x + 0.5f) * mSquareSize);
+        params.topMargin = Math.round((stone.intersection.y + 0.5f) * mSquareSize);
+        if (mUpdateDepth > 0) {
+            // 批量修改时不单独请求布局，在endUpdate中统一请求
+            addViewInLayout(stoneView, -1, params, true);
+            mIsLayoutPending = true;
+        } else {
+            stoneView.setLayoutParams(params);
+            addView(stoneView);
+        }
+
+        mStoneViews[stone.intersection.x + stone.intersection.y * mBoardSize] = stoneView;
+        return stoneView;
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return who instanceof StoneDrawable || super.verifyDrawable(who);
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable drawable) {
+        if (drawable instanceof StoneDrawable) {
+            // 只重绘棋子所在区域，并允许在非UI线程中修改棋子状态
+            Rect bounds = drawable.getBounds();
+            postInvalidate(bounds.left, bounds.top, bounds.right, bounds.bottom);
+        } else {
+            super.invalidateDrawable(drawable);
+        }
+    }
+
+    /**
+     * 重绘指定交叉点所在的格子，包含棋子阴影及高亮框的范围
+     *
+     * @param x
+     * @param y
+     */
+    private void invalidateIntersection(int x, int y) {
+        int left = Math.round((x + 0.5f) * mSquareSize);
+        int top = Math.round((y + 0.5f) * mSquareSize);
+        int margin = HIGHLIGHT_STROKE_WIDTH;
+        int l = left - getShadowLeftOffset() - margin;
+        int t = top - getShadowTopOffset() - margin;
+        int r = left + mSquareSize + getShadowRightOffset() + margin;
+        int b = top + mSquareSize + getShadowBottomOffset() + margin;
+        if (mUpdateDepth > 0) {
+            // 批量修改时合并重绘区域，在endUpdate中统一重绘
+            mPendingDirtyRect.union(l, t, r, b);
+        } else {
+            postInvalidate(l, t, r, b);
+        }
+    }
+
+    /**
+     * 重绘高亮交叉点及其四边的高亮坐标
+     *
+     * @param x
+     * @param y
+     */
+    private void invalidateHighlight(int x, int y) {
+        invalidateIntersection(x, y);
+        if (mIsShowHighlightCoordinates) {
+            int left = Math.round((x + 0.5f) * mSquareSize);
+            int top = Math.round((y + 0.5f) * mSquareSize);
+            // 上下横坐标
+            postInvalidate(left, 0, left + mSquareSize, mSquareSize);
+            postInvalidate(left, mBoardSize * mSquareSize, left + mSquareSize, getHeight());
+            // 左右纵坐标
+            postInvalidate(0, top, mSquareSize, top + mSquareSize);
+            postInvalidate(mBoardSize * mSquareSize, top, getWidth(), top + mSquareSize);
+        }
     }
 
     private void initBoard() {
@@ -163,21 +409,62 @@ public class BoardView extends RelativeLayout {
         setWillNotDraw(false);
 
         mShadowBitmap = BitmapFactory.decodeResource(getContext().getResources(), R.drawable.shadow);
+
+        allocateStoneSlots();
     }
 
     private void checkGoTheme() {
         if (mGoTheme == null) {
             GoTheme.DrawableCache drawableCache = new GoTheme.DrawableCache(getContext(), (int) (Runtime.getRuntime().maxMemory() / 32));
             mGoTheme = new MonochromeTheme(drawableCache); // 默认使用极简主题
+            mRenderSpec = mGoTheme.getRenderSpec();
+            updateScaledTextures();
         }
     }
 
     private void notifyBoardChanged() {
+        if (mUpdateDepth > 0) {
+            mIsBoardChangePending = true;
+            return;
+        }
         for (OnBoardChangeListener listener : mBoardChangeListeners) {
             if (listener != null) {
                 listener.onBoardChanged();
             }
         }
+        if (!mPendingAddedStones.isEmpty() || !mPendingRemovedStones.isEmpty()) {
+            List<Stone> added = mPendingAddedStones;
+            List<Stone> removed = mPendingRemovedStones;
+            mPendingAddedStones = new ArrayList<>();
+            mPendingRemovedStones = new ArrayList<>();
+            for (OnBoardDeltaListener listener : mBoardDeltaListeners) {
+                if (listener != null) {
+                    listener.onBoardDelta(added, removed);
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录新增的棋子，用于通知棋盘变化增量
+     *
+     * @param stone
+     */
+    private void recordAddedStone(Stone stone) {
+        if (!mBoardDeltaListeners.isEmpty()) {
+            mPendingAddedStones.add(stone);
+        }
+    }
+
+    /**
+     * 记录删除的棋子，同一批修改中先增后删的棋子互相抵消
+     *
+     * @param stone
+     */
+    private void recordRemovedStone(Stone stone) {
+        if (!mBoardDeltaListeners.isEmpty() && !mPendingAddedStones.remove(stone)) {
+            mPendingRemovedStones.add(stone);
+        }
     }
 
     private void notifyHighlightIntersectionChanged() {
@@ -200,33 +487,83 @@ public class BoardView extends RelativeLayout {
      * 重置棋盘
      */
     public void reset() {
-        mStoneViewMap.clear();
+        for (StoneDrawable drawable : mStoneSlots) {
+            if (drawable != null) {
+                recordRemovedStone(drawable.getStone());
+            }
+        }
+        allocateStoneSlots();
+        mNumberIndex.clear();
+        mRemovingDrawables.clear();
+        mIsShadowLayerValid = false;
         mHighlightIntersection = null;
+        mHighlightX = -1;
+        mHighlightY = -1;
         removeAllViews();
+        postInvalidate();
 
         notifyBoardChanged();
     }
 
     /**
      * 设置主题样式
+     * <p>
+     * 使用主题已编译的结果，修改主题字段后需要先调用GoTheme.compile()
      *
      * @param goTheme
      */
     public void setGoTheme(GoTheme goTheme) {
         if (mGoTheme != goTheme) {
             mGoTheme = goTheme;
-            for (StoneView view : mStoneViewMap.values()) {
-                if (view.getStone().color == StoneColor.BLACK) {
-                    view.setStoneTheme(mGoTheme.mBlackStoneTheme);
-                } else {
-                    view.setStoneTheme(mGoTheme.mWhiteStoneTheme);
+            // 使用主题缓存的编译结果，与共享同一主题的其他视图共用纹理缓存
+            mRenderSpec = goTheme.getRenderSpec();
+            updateScaledTextures();
+            for (StoneDrawable drawable : mStoneSlots) {
+                if (drawable != null) {
+                    applyStoneTheme(drawable);
                 }
-                view.setMarkTheme(mGoTheme.mMarkTheme);
             }
             postInvalidate();
         }
     }
 
+    /**
+     * 按当前主题的编译结果设置棋子及标记主题
+     *
+     * @param drawable
+     */
+    private void applyStoneTheme(StoneDrawable drawable) {
+        if (drawable.getStone().color == StoneColor.BLACK) {
+            drawable.setStoneTheme(mGoTheme.mBlackStoneTheme, mRenderSpec.mBlackStoneSpec);
+        } else {
+            drawable.setStoneTheme(mGoTheme.mWhiteStoneTheme, mRenderSpec.mWhiteStoneSpec);
+        }
+        drawable.setMarkTheme(mGoTheme.mMarkTheme, mRenderSpec.mMarkSpec);
+        drawable.setScaledTextures(drawable.getStone().color == StoneColor.BLACK ? mBlackScaledTextures : mWhiteScaledTextures);
+    }
+
+    /**
+     * 按当前主题及棋子尺寸预缩放棋子纹理，只在格子大小、棋子间距或主题变化时重建，绘制时不再缩放
+     */
+    private void updateScaledTextures() {
+        if (mRenderSpec == null) {
+            return;
+        }
+        int size = StoneDrawable.getTextureSize(mSquareSize, mStoneSpace);
+        if (mBlackScaledTextures != null && mBlackScaledTextures.matches(mRenderSpec.mBlackStoneSpec, size)
+                && mWhiteScaledTextures.matches(mRenderSpec.mWhiteStoneSpec, size)) {
+            return;
+        }
+        mBlackScaledTextures = mRenderSpec.mBlackStoneSpec.createScaledTextures(size);
+        mWhiteScaledTextures = mRenderSpec.mWhiteStoneSpec.createScaledTextures(size);
+        for (StoneDrawable drawable : mStoneSlots) {
+            if (drawable != null) {
+                drawable.setScaledTextures(drawable.getStone().color == StoneColor.BLACK
+                        ? mBlackScaledTextures : mWhiteScaledTextures);
+            }
+        }
+    }
+
     /**
      * 获取主题样式
      *
@@ -244,6 +581,12 @@ public class BoardView extends RelativeLayout {
     public void setStoneSpace(int stoneSpace) {
         if (mStoneSpace != stoneSpace) {
             mStoneSpace = stoneSpace;
+            for (StoneDrawable drawable : mStoneSlots) {
+                if (drawable != null) {
+                    drawable.setStoneSpace(mStoneSpace);
+                }
+            }
+            updateScaledTextures();
             postInvalidate();
         }
     }
@@ -265,33 +608,147 @@ public class BoardView extends RelativeLayout {
     public void setDrawNumberStyle(int drawNumberShow) {
         if (mDrawNumberStyle != drawNumberShow) {
             mDrawNumberStyle = drawNumberShow;
-            switch (drawNumberShow) {
-                case DRAW_NUMBER_STYLE_DISABLE:
-                    for (StoneView view : mStoneViewMap.values()) {
-                        view.setDrawNumber(false);
-                    }
-                    break;
-                case DRAW_NUMBER_STYLE_LAST:
-                    int lastNumber = -1;
-                    StoneView lastView = null;
-                    for (StoneView view : mStoneViewMap.values()) {
-                        int number = view.getStone().number;
-                        if (number > lastNumber) {
-                            lastNumber = number;
-                            lastView = view;
-                        }
-                        view.setDrawNumber(false);
-                    }
-                    if (lastView != null) {
-                        lastView.setDrawNumber(true);
+            refreshDrawNumber();
+        }
+    }
+
+    /**
+     * 设置DRAW_NUMBER_STYLE_LAST_N模式下显示手数的棋子数
+     *
+     * @param count
+     */
+    public void setDrawNumberCount(int count) {
+        if (mDrawNumberCount != count) {
+            mDrawNumberCount = count;
+            if (mDrawNumberStyle == DRAW_NUMBER_STYLE_LAST_N) {
+                refreshDrawNumber();
+            }
+        }
+    }
+
+    /**
+     * 获取DRAW_NUMBER_STYLE_LAST_N模式下显示手数的棋子数
+     *
+     * @return
+     */
+    public int getDrawNumberCount() {
+        return mDrawNumberCount;
+    }
+
+    /**
+     * 获取需要显示手数的最后几手棋子数
+     *
+     * @return
+     */
+    private int getLastDrawNumberCount() {
+        switch (mDrawNumberStyle) {
+            case DRAW_NUMBER_STYLE_LAST:
+                return 1;
+            case DRAW_NUMBER_STYLE_LAST_N:
+                return mDrawNumberCount;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 获取手数索引中倒数第n个棋子的键
+     *
+     * @param n
+     * @return 棋子数不足n个时返回null
+     */
+    private Long getLastNumberKey(int n) {
+        if (n <= 0 || mNumberIndex.isEmpty()) {
+            return null;
+        }
+        Long key = mNumberIndex.lastKey();
+        for (int i = 1; i < n && key != null; i++) {
+            key = mNumberIndex.lowerKey(key);
+        }
+        return key;
+    }
+
+    /**
+     * 按当前手数显示方式刷新所有棋子
+     */
+    private void refreshDrawNumber() {
+        switch (mDrawNumberStyle) {
+            case DRAW_NUMBER_STYLE_DISABLE:
+                for (StoneDrawable drawable : mStoneSlots) {
+                    if (drawable != null) {
+                        drawable.setDrawNumber(false);
                     }
-                    break;
-                case DRAW_NUMBER_STYLE_ALL:
-                    for (StoneView view : mStoneViewMap.values()) {
-                        view.setDrawNumber(true);
+                }
+                break;
+            case DRAW_NUMBER_STYLE_LAST:
+            case DRAW_NUMBER_STYLE_LAST_N:
+                int count = getLastDrawNumberCount();
+                for (StoneDrawable drawable : mNumberIndex.descendingMap().values()) {
+                    drawable.setDrawNumber(count-- > 0);
+                }
+                break;
+            case DRAW_NUMBER_STYLE_ALL:
+                for (StoneDrawable drawable : mStoneSlots) {
+                    if (drawable != null) {
+                        drawable.setDrawNumber(true);
                     }
-                    break;
+                }
+                break;
+        }
+    }
+
+    /**
+     * 是否处于调用方开启的批量修改中，addStone内部开启的批量修改不计在内
+     *
+     * @return
+     */
+    private boolean isExplicitUpdate() {
+        return mUpdateDepth > mImplicitUpdateDepth;
+    }
+
+    /**
+     * 将新添加的棋子加入手数索引，只改动新棋子及被挤出最后N手的棋子
+     *
+     * @param drawable
+     */
+    private void addToNumberIndex(StoneDrawable drawable) {
+        drawable.mNumberKey = ((long) drawable.getStone().number << 32) | (mNumberSequence++ & 0xFFFFFFFFL);
+        mNumberIndex.put(drawable.mNumberKey, drawable);
+
+        int count = getLastDrawNumberCount();
+        if (count > 0 && !isExplicitUpdate()) {
+            Long nthKey = getLastNumberKey(count);
+            if (nthKey == null || drawable.mNumberKey >= nthKey) {
+                drawable.setDrawNumber(true);
+                Long outKey = nthKey != null ? mNumberIndex.lowerKey(nthKey) : null;
+                if (outKey != null) {
+                    mNumberIndex.get(outKey).setDrawNumber(false);
+                }
+            } else {
+                drawable.setDrawNumber(false);
+            }
+        } else if (count > 0) {
+            drawable.setDrawNumber(false);
+            mIsDrawNumberDirty = true;
+        }
+    }
+
+    /**
+     * 将删除的棋子移出手数索引，只改动补入最后N手的棋子
+     *
+     * @param drawable
+     */
+    private void removeFromNumberIndex(StoneDrawable drawable) {
+        mNumberIndex.remove(drawable.mNumberKey);
+
+        int count = getLastDrawNumberCount();
+        if (count > 0 && !isExplicitUpdate()) {
+            Long nthKey = getLastNumberKey(count);
+            if (nthKey != null) {
+                mNumberIndex.get(nthKey).setDrawNumber(true);
             }
+        } else if (count > 0) {
+            mIsDrawNumberDirty = true;
         }
     }
 
@@ -312,6 +769,7 @@ public class BoardView extends RelativeLayout {
     public void setSquareSize(int squareSize) {
         if (mSquareSize != squareSize) {
             mSquareSize = squareSize;
+            updateScaledTextures();
             postInvalidate();
         }
     }
@@ -327,13 +785,57 @@ public class BoardView extends RelativeLayout {
 
     /**
      * 设置棋盘大小
+     * <p>
+     * 超出新棋盘的棋子会被删除，与其他删除一样回调棋盘变化通知及增量
      *
      * @param boardSize
+     * @throws IllegalArgumentException 棋盘大小小于1或大于Zobrist.MAX_BOARD_SIZE
      */
     public void setBoardSize(int boardSize) {
+        Zobrist.checkBoardSize(boardSize);
         if (mBoardSize != boardSize) {
+            beginUpdate();
+            StoneDrawable[] oldSlots = mStoneSlots;
+            StoneView[] oldViews = mStoneViews;
+            int oldHighlightIndex = mHighlightStoneIndex;
             mBoardSize = boardSize;
+            allocateStoneSlots();
+            if (oldSlots != null) {
+                for (int i = 0; i < oldSlots.length; i++) {
+                    StoneDrawable drawable = oldSlots[i];
+                    if (drawable == null) {
+                        continue;
+                    }
+                    Intersection intersection = drawable.getStone().intersection;
+                    if (isInBoard(intersection.x, intersection.y)) {
+                        // 仍在棋盘内的棋子按新的棋盘大小重新放入棋盘表
+                        int index = intersection.x + intersection.y * mBoardSize;
+                        putStoneSlot(index, drawable);
+                        mStoneViews[index] = oldViews[i];
+                        if (i == oldHighlightIndex) {
+                            mHighlightStoneIndex = index;
+                        }
+                    } else {
+                        if (oldViews[i] != null) {
+                            removeView(oldViews[i]);
+                        }
+                        removeFromNumberIndex(drawable);
+                        recordRemovedStone(drawable.getStone());
+                        notifyBoardChanged();
+                    }
+                }
+            }
+            if (mHighlightIntersection != null
+                    && !isInBoard(mHighlightIntersection.x, mHighlightIntersection.y)) {
+                // 超出新棋盘的高亮交叉点没有对应的坐标，绘制坐标时会越界
+                setHighlightIntersection(null);
+            }
+            mIsShadowLayerValid = false;
+            // 分析数据与棋盘大小相关，随棋盘大小一起清除
+            mAnalysisLayer.update(boardSize, null, null, null, mAnalysisDirtyCells);
+            requestLayout();
             postInvalidate();
+            endUpdate();
         }
     }
 
@@ -373,28 +875,100 @@ public class BoardView extends RelativeLayout {
      * @param stone
      */
     public void setHighlightStone(Stone stone) {
-        for (StoneView view : mStoneViewMap.values()) {
-            if (view.getStone().equals(stone)) {
-                view.setHighlight(true);
-            } else {
-                view.setHighlight(false);
+        int index = -1;
+        if (stone != null && stone.intersection != null && isInBoard(stone.intersection.x, stone.intersection.y)) {
+            int i = stone.intersection.x + stone.intersection.y * mBoardSize;
+            if (mStoneSlots[i] != null && mStoneSlots[i].getStone().equals(stone)) {
+                index = i;
+            }
+        }
+        if (mHighlightStoneIndex != index) {
+            if (mHighlightStoneIndex >= 0 && mStoneSlots[mHighlightStoneIndex] != null) {
+                mStoneSlots[mHighlightStoneIndex].setHighlight(false);
             }
+            if (index >= 0) {
+                mStoneSlots[index].setHighlight(true);
+            }
+            mHighlightStoneIndex = index;
         }
         notifyHighlightStoneChanged();
     }
 
     /**
      * 获取高亮的棋子
+     * <p>
+     * RENDER_MODE_CANVAS模式下没有StoneView，始终返回null
      *
      * @return
      */
     public StoneView getHighlightStone() {
-        for (StoneView view : mStoneViewMap.values()) {
-            if (view.isHighlight()) {
-                return view;
-            }
+        return mHighlightStoneIndex >= 0 ? mStoneViews[mHighlightStoneIndex] : null;
+    }
+
+    /**
+     * 获取指定交叉点上的棋子
+     *
+     * @param x
+     * @param y
+     * @return 没有棋子时返回null
+     */
+    public Stone getStone(int x, int y) {
+        if (!isInBoard(x, y)) {
+            return null;
+        }
+        StoneDrawable drawable = mStoneSlots[x + y * mBoardSize];
+        return drawable != null ? drawable.getStone() : null;
+    }
+
+    /**
+     * 获取指定交叉点上的棋子
+     *
+     * @param intersection
+     * @return 没有棋子时返回null
+     */
+    public Stone getStone(Intersection intersection) {
+        return getStone(intersection.x, intersection.y);
+    }
+
+    /**
+     * 获取指定交叉点上的棋子颜色
+     *
+     * @param x
+     * @param y
+     * @return 没有棋子时返回null
+     */
+    public StoneColor getStoneColor(int x, int y) {
+        if (!isInBoard(x, y)) {
+            return null;
+        }
+        switch (mStoneColors[x + y * mBoardSize]) {
+            case COLOR_BLACK:
+                return StoneColor.BLACK;
+            case COLOR_WHITE:
+                return StoneColor.WHITE;
+            default:
+                return null;
         }
-        return null;
+    }
+
+    /**
+     * 获取指定交叉点上的棋子手数
+     *
+     * @param x
+     * @param y
+     * @return 没有棋子时返回0
+     */
+    public int getStoneNumber(int x, int y) {
+        return isInBoard(x, y) ? mStoneNumbers[x + y * mBoardSize] : 0;
+    }
+
+    /**
+     * 获取棋盘上的棋子数
+     *
+     * @return
+     */
+    public int getStoneCount() {
+        return mStoneCount;
     }
 
     /**
@@ -403,8 +977,24 @@ public class BoardView extends RelativeLayout {
      * @param intersection
      */
     public void setHighlightIntersection(Intersection intersection) {
+        if (intersection == null ? mHighlightX < 0
+                : (intersection.x == mHighlightX && intersection.y == mHighlightY)) {
+            // 高亮交叉点没有变化时不重绘
+            mHighlightIntersection = intersection;
+            return;
+        }
+        if (mHighlightX >= 0) {
+            invalidateHighlight(mHighlightX, mHighlightY);
+        }
         mHighlightIntersection = intersection;
-        postInvalidate();
+        if (intersection != null) {
+            mHighlightX = intersection.x;
+            mHighlightY = intersection.y;
+            invalidateHighlight(mHighlightX, mHighlightY);
+        } else {
+            mHighlightX = -1;
+            mHighlightY = -1;
+        }
         notifyHighlightIntersectionChanged();
     }
 
@@ -423,7 +1013,12 @@ public class BoardView extends RelativeLayout {
      * @param showHighlightCoordinates
      */
     public void setShowHighlightCoordinates(boolean showHighlightCoordinates) {
-        mIsShowHighlightCoordinates = showHighlightCoordinates;
+        if (mIsShowHighlightCoordinates != showHighlightCoordinates) {
+            mIsShowHighlightCoordinates = showHighlightCoordinates;
+            if (mHighlightX >= 0) {
+                invalidateHighlight(mHighlightX, mHighlightY);
+            }
+        }
     }
 
     /**
@@ -436,56 +1031,138 @@ public class BoardView extends RelativeLayout {
     }
 
     /**
-     * 添加棋子
+     * 设置分析数据，显示在棋子之上，必须在主线程中调用
+     * <p>
+     * 数组按交叉点索引(x + y * boardSize)存储，内容会被复制；只重绘显示内容发生变化的交叉点，不会重新布局棋子
      *
-     * @param stone
-     * @return
+     * @param ownership 归属，-1到1，正数表示黑方，为null时不显示
+     * @param winRates  候选点胜率，0到1
+     * @param visits    候选点计算量，不大于0的交叉点不是候选点，为null时不显示候选点
      */
-    public StoneView addStone(Stone stone) {
-        if (!mStoneViewMap.containsKey(stone)) {
-            checkGoTheme();
-
-            StoneView stoneView = new StoneView(getContext());
-            stoneView.setStone(stone);
-            stoneView.setStoneTheme(stone.color == StoneColor.BLACK ? mGoTheme.mBlackStoneTheme : mGoTheme.mWhiteStoneTheme);
-            stoneView.setMarkTheme(mGoTheme.mMarkTheme);
-            stoneView.setStoneSpace(mStoneSpace);
-
-            LayoutParams params = new LayoutParams(mSquareSize, mSquareSize);
-            params.leftMargin = Math.round((stone.intersection.x + 0.5f) * mSquareSize);
-            params.topMargin = Math.round((stone.intersection.y + 0.5f) * mSquareSize);
-            stoneView.setLayoutParams(params);
-            addView(stoneView);
+    public void setAnalysisData(float[] ownership, float[] winRates, int[] visits) {
+        if (mAnalysisLayer.update(mBoardSize, ownership, winRates, visits, mAnalysisDirtyCells)) {
+            int l = Math.round((mAnalysisDirtyCells.left + 0.5f) * mSquareSize);
+            int t = Math.round((mAnalysisDirtyCells.top + 0.5f) * mSquareSize);
+            int r = Math.round((mAnalysisDirtyCells.right + 0.5f) * mSquareSize);
+            int b = Math.round((mAnalysisDirtyCells.bottom + 0.5f) * mSquareSize);
+            if (mUpdateDepth > 0) {
+                mPendingDirtyRect.union(l, t, r, b);
+            } else {
+                invalidate(l, t, r, b);
+            }
+        }
+    }
 
-            mStoneViewMap.put(stone, stoneView);
+    /**
+     * 清除分析数据
+     */
+    public void clearAnalysisData() {
+        setAnalysisData(null, null, null);
+    }
 
-            switch (mDrawNumberStyle) {
-                case DRAW_NUMBER_STYLE_DISABLE:
-                    stoneView.setDrawNumber(false);
+    /**
+     * 设置棋子渲染方式
+     *
+     * @param renderMode RENDER_MODE_VIEW或RENDER_MODE_CANVAS
+     */
+    public void setRenderMode(int renderMode) {
+        if (mRenderMode != renderMode) {
+            mRenderMode = renderMode;
+            switch (renderMode) {
+                case RENDER_MODE_VIEW:
+                    mRemovingDrawables.clear();
+                    for (StoneDrawable drawable : mStoneSlots) {
+                        if (drawable != null) {
+                            attachStoneView(drawable);
+                        }
+                    }
                     break;
-                case DRAW_NUMBER_STYLE_LAST:
-                    int lastNumber = -1;
-                    StoneView lastView = null;
-                    for (StoneView view : mStoneViewMap.values()) {
-                        int number = view.getStone().number;
-                        if (number > lastNumber) {
-                            lastNumber = number;
-                            lastView = view;
+                case RENDER_MODE_CANVAS:
+                    for (int i = 0; i < mStoneViews.length; i++) {
+                        if (mStoneViews[i] != null) {
+                            removeView(mStoneViews[i]);
+                            mStoneViews[i] = null;
                         }
-                        view.setDrawNumber(false);
                     }
-                    if (lastView != null) {
-                        lastView.setDrawNumber(true);
+                    for (StoneDrawable drawable : mStoneSlots) {
+                        if (drawable != null) {
+                            drawable.setCallback(this);
+                            layoutStoneDrawable(drawable);
+                        }
                     }
                     break;
-                case DRAW_NUMBER_STYLE_ALL:
-                    stoneView.setDrawNumber(true);
-                    break;
             }
+            postInvalidate();
+        }
+    }
 
-            notifyBoardChanged();
+    /**
+     * 获取棋子渲染方式
+     *
+     * @return
+     */
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * 添加棋子
+     * <p>
+     * 同一交叉点只能有一个棋子，已有其他棋子时先将其删除；RENDER_MODE_CANVAS模式下不会创建StoneView，返回null
+     *
+     * @param stone
+     * @return
+     */
+    public StoneView addStone(Stone stone) {
+        Intersection intersection = stone.intersection;
+        if (intersection == null || !isInBoard(intersection.x, intersection.y)) {
+            return null;
+        }
+        int index = intersection.x + intersection.y * mBoardSize;
+        StoneDrawable existing = mStoneSlots[index];
+        if (existing != null && existing.getStone().equals(stone)) {
+            return mStoneViews[index];
+        }
+        checkGoTheme();
+
+        // 单次添加只是为了合并替换棋子时的删除与添加，手数仍按增量方式更新
+        mImplicitUpdateDepth++;
+        beginUpdate();
+        if (existing != null) {
+            removeStoneAt(index, false);
+        }
+
+        StoneDrawable stoneDrawable = new StoneDrawable();
+        stoneDrawable.setStone(stone);
+        applyStoneTheme(stoneDrawable);
+        stoneDrawable.setStoneSpace(mStoneSpace);
+
+        putStoneSlot(index, stoneDrawable);
+
+        if (mRenderMode == RENDER_MODE_VIEW) {
+            attachStoneView(stoneDrawable);
+        } else {
+            stoneDrawable.setCallback(this);
+            layoutStoneDrawable(stoneDrawable);
+        }
+        addStoneShadow(intersection.x, intersection.y);
+        invalidateIntersection(intersection.x, intersection.y);
+
+        switch (mDrawNumberStyle) {
+            case DRAW_NUMBER_STYLE_DISABLE:
+                stoneDrawable.setDrawNumber(false);
+                break;
+            case DRAW_NUMBER_STYLE_ALL:
+                stoneDrawable.setDrawNumber(true);
+                break;
         }
-        return mStoneViewMap.get(stone);
+        addToNumberIndex(stoneDrawable);
+
+        recordAddedStone(stone);
+        notifyBoardChanged();
+        endUpdate();
+        mImplicitUpdateDepth--;
+        return mStoneViews[index];
     }
 
     /**
@@ -500,50 +1177,312 @@ public class BoardView extends RelativeLayout {
 
     /**
      * 删除棋子
+     * <p>
+     * 只有交叉点上的棋子与传入的棋子相同时才会删除；RENDER_MODE_CANVAS模式下不存在StoneView，返回null
      *
      * @param stone
      * @param animate
      * @return
      */
     public StoneView removeStone(Stone stone, boolean animate) {
-        StoneView stoneView = mStoneViewMap.get(stone);
-        if (stoneView != null) {
-            mStoneViewMap.remove(stone);
-            if (animate) {
-                // 棋子消失动画
-                stoneView.animate().alpha(0f);
-                stoneView.animate().setListener(new AnimatorListenerAdapter() {
-                    @Override
-                    public void onAnimationEnd(Animator animation) {
-                        super.onAnimationEnd(animation);
-                        removeView(stoneView);
-                    }
-                });
-            } else {
-                removeView(stoneView);
-            }
+        Intersection intersection = stone.intersection;
+        if (intersection == null || !isInBoard(intersection.x, intersection.y)) {
+            return null;
+        }
+        int index = intersection.x + intersection.y * mBoardSize;
+        StoneDrawable existing = mStoneSlots[index];
+        if (existing == null || !existing.getStone().equals(stone)) {
+            return null;
+        }
+        return removeStoneAt(index, animate);
+    }
 
-            if (mDrawNumberStyle == DRAW_NUMBER_STYLE_LAST) {
-                int lastNumber = -1;
-                StoneView lastView = null;
-                for (StoneView view : mStoneViewMap.values()) {
-                    int number = view.getStone().number;
-                    if (number > lastNumber) {
-                        lastNumber = number;
-                        lastView = view;
-                    }
-                    view.setDrawNumber(false);
+    /**
+     * 删除指定交叉点上的棋子
+     *
+     * @param intersection
+     * @return
+     */
+    public StoneView removeStone(Intersection intersection) {
+        return removeStone(intersection, false);
+    }
+
+    /**
+     * 删除指定交叉点上的棋子
+     * <p>
+     * RENDER_MODE_CANVAS模式下不存在StoneView，返回null
+     *
+     * @param intersection
+     * @param animate
+     * @return
+     */
+    public StoneView removeStone(Intersection intersection, boolean animate) {
+        if (!isInBoard(intersection.x, intersection.y)) {
+            return null;
+        }
+        return removeStoneAt(intersection.x + intersection.y * mBoardSize, animate);
+    }
+
+    /**
+     * 删除棋盘表中指定索引处的棋子
+     *
+     * @param index
+     * @param animate
+     * @return
+     */
+    private StoneView removeStoneAt(int index, boolean animate) {
+        StoneDrawable stoneDrawable = mStoneSlots[index];
+        StoneView stoneView = mStoneViews[index];
+        if (stoneDrawable != null) {
+            Stone stone = stoneDrawable.getStone();
+            clearStoneSlot(index);
+            if (stoneView != null) {
+                if (animate) {
+                    // 棋子消失动画
+                    stoneView.animate().alpha(0f);
+                    stoneView.animate().setListener(new AnimatorListenerAdapter() {
+                        @Override
+                        public void onAnimationEnd(Animator animation) {
+                            super.onAnimationEnd(animation);
+                            removeView(stoneView);
+                        }
+                    });
+                } else if (mUpdateDepth > 0) {
+                    removeViewInLayout(stoneView);
+                    mIsLayoutPending = true;
+                } else {
+                    removeView(stoneView);
                 }
-                if (lastView != null) {
-                    lastView.setDrawNumber(true);
+            } else {
+                if (animate) {
+                    // 棋子消失动画
+                    mRemovingDrawables.add(stoneDrawable);
+                    ObjectAnimator animator = ObjectAnimator.ofInt(stoneDrawable, "alpha", stoneDrawable.getAlpha(), 0);
+                    animator.addListener(new AnimatorListenerAdapter() {
+                        @Override
+                        public void onAnimationEnd(Animator animation) {
+                            super.onAnimationEnd(animation);
+                            mRemovingDrawables.remove(stoneDrawable);
+                            invalidateIntersection(stone.intersection.x, stone.intersection.y);
+                        }
+                    });
+                    animator.start();
                 }
             }
+            removeStoneShadow(stone.intersection.x, stone.intersection.y);
+            invalidateIntersection(stone.intersection.x, stone.intersection.y);
+
+            removeFromNumberIndex(stoneDrawable);
 
+            recordRemovedStone(stone);
             notifyBoardChanged();
         }
         return stoneView;
     }
 
+    /**
+     * 更新棋盘表中指定索引处棋子的手数，保留原有的显示对象及纹理
+     *
+     * @param index
+     * @param stone 与原棋子同色的新棋子
+     */
+    private void updateStoneNumber(int index, Stone stone) {
+        StoneDrawable stoneDrawable = mStoneSlots[index];
+        removeFromNumberIndex(stoneDrawable);
+        stoneDrawable.replaceStone(stone);
+        mStoneNumbers[index] = stone.number;
+        addToNumberIndex(stoneDrawable);
+        notifyBoardChanged();
+    }
+
+    /**
+     * 开始批量修改棋盘
+     * <p>
+     * 在对应的endUpdate之前，增删棋子不会单独触发布局、手数刷新、重绘及棋盘变化通知，可以嵌套调用
+     */
+    public void beginUpdate() {
+        mUpdateDepth++;
+    }
+
+    /**
+     * 结束批量修改棋盘
+     * <p>
+     * 最外层的endUpdate会统一进行一次布局、手数刷新、重绘及棋盘变化通知
+     */
+    public void endUpdate() {
+        if (mUpdateDepth <= 0) {
+            return;
+        }
+        if (--mUpdateDepth == 0) {
+            if (mIsDrawNumberDirty) {
+                mIsDrawNumberDirty = false;
+                refreshDrawNumber();
+            }
+            if (mIsLayoutPending) {
+                mIsLayoutPending = false;
+                requestLayout();
+            }
+            if (!mPendingDirtyRect.isEmpty()) {
+                postInvalidate(mPendingDirtyRect.left, mPendingDirtyRect.top,
+                        mPendingDirtyRect.right, mPendingDirtyRect.bottom);
+                mPendingDirtyRect.setEmpty();
+            }
+            if (mIsBoardChangePending) {
+                mIsBoardChangePending = false;
+                notifyBoardChanged();
+            }
+        }
+    }
+
+    /**
+     * 批量添加棋子
+     *
+     * @param stones
+     */
+    public void addStones(Collection<Stone> stones) {
+        beginUpdate();
+        for (Stone stone : stones) {
+            addStone(stone);
+        }
+        endUpdate();
+    }
+
+    /**
+     * 批量删除棋子，如提子
+     *
+     * @param stones
+     */
+    public void removeStones(Collection<Stone> stones) {
+        removeStones(stones, false);
+    }
+
+    /**
+     * 批量删除棋子，如提子
+     *
+     * @param stones
+     * @param animate
+     */
+    public void removeStones(Collection<Stone> stones, boolean animate) {
+        beginUpdate();
+        for (Stone stone : stones) {
+            removeStone(stone, animate);
+        }
+        endUpdate();
+    }
+
+    /**
+     * 批量删除指定交叉点上的棋子，如应用规则棋盘返回的提子结果
+     *
+     * @param intersections
+     * @param animate
+     */
+    public void removeStonesAt(Collection<Intersection> intersections, boolean animate) {
+        beginUpdate();
+        for (Intersection intersection : intersections) {
+            removeStone(intersection, animate);
+        }
+        endUpdate();
+    }
+
+    /**
+     * 设置棋盘局面
+     * <p>
+     * 逐个交叉点与当前内容比较，只删除、添加或替换颜色有变化的棋子；同色棋子保留原有的显示对象，
+     * 手数不同时只更新手数，不计入棋盘变化增量；所有修改作为一次批量修改完成，棋盘变化通知只回调一次
+     *
+     * @param stones
+     */
+    public void setPosition(Collection<Stone> stones) {
+        Stone[] target = new Stone[mBoardSize * mBoardSize];
+        for (Stone stone : stones) {
+            Intersection intersection = stone.intersection;
+            if (intersection != null && isInBoard(intersection.x, intersection.y)) {
+                target[intersection.x + intersection.y * mBoardSize] = stone;
+            }
+        }
+        applyPosition(target);
+    }
+
+    /**
+     * 设置棋盘局面
+     *
+     * @param grid 按grid[x][y]排列的棋子，空点为null，大小需与棋盘大小一致
+     * @see #setPosition(Collection)
+     */
+    public void setPosition(Stone[][] grid) {
+        Stone[] target = new Stone[mBoardSize * mBoardSize];
+        for (int x = 0; x < mBoardSize && x < grid.length; x++) {
+            for (int y = 0; y < mBoardSize && y < grid[x].length; y++) {
+                target[x + y * mBoardSize] = grid[x][y];
+            }
+        }
+        applyPosition(target);
+    }
+
+    /**
+     * 设置棋盘局面
+     * <p>
+     * 局面的棋盘大小与当前不一致时先调整棋盘大小；交叉点上已有同色棋子时保留原棋子及其手数，新添加的棋子手数为0
+     *
+     * @param state
+     * @see #setPosition(Collection)
+     */
+    public void setPosition(BoardState state) {
+        setBoardSize(state.getBoardSize());
+        beginUpdate();
+        for (int y = 0; y < mBoardSize; y++) {
+            for (int x = 0; x < mBoardSize; x++) {
+                int index = x + y * mBoardSize;
+                StoneColor color = state.getColor(x, y);
+                StoneDrawable drawable = mStoneSlots[index];
+                if (color == null) {
+                    if (drawable != null) {
+                        removeStoneAt(index, false);
+                    }
+                } else if (drawable == null || drawable.getStone().color != color) {
+                    Stone stone = new Stone();
+                    stone.color = color;
+                    stone.intersection = Intersection.valueOf(x, y);
+                    addStone(stone);
+                }
+            }
+        }
+        endUpdate();
+    }
+
+    /**
+     * 将棋盘内容更新为目标局面
+     *
+     * @param target 按交叉点索引排列的目标棋子
+     */
+    private void applyPosition(Stone[] target) {
+        beginUpdate();
+        for (int i = 0; i < target.length; i++) {
+            StoneDrawable drawable = mStoneSlots[i];
+            Stone stone = target[i];
+            if (stone == null) {
+                if (drawable != null) {
+                    removeStoneAt(i, false);
+                }
+            } else if (drawable == null || drawable.getStone().color != stone.color) {
+                // 交叉点上已有异色棋子时addStone会将其替换
+                addStone(stone);
+            } else if (drawable.getStone().number != stone.number) {
+                updateStoneNumber(i, stone);
+            }
+        }
+        endUpdate();
+    }
+
+    /**
+     * 获取当前棋盘局面
+     *
+     * @return
+     */
+    public BoardState getBoardState() {
+        return BoardState.valueOf(mBoardSize, mStoneColors, COLOR_BLACK, COLOR_WHITE);
+    }
+
     /**
      * 根据传入的坐标查找最近的交叉点
      *
@@ -558,7 +1497,7 @@ public class BoardView extends RelativeLayout {
                 || row < 0 || row >= mBoardSize) {
             return null;
         }
-        return new Intersection(col, row);
+        return Intersection.valueOf(col, row);
     }
 
     @Override
@@ -569,168 +1508,304 @@ public class BoardView extends RelativeLayout {
         // 绘制棋子阴影
         drawStoneShadow(canvas);
 
+        // 绘制棋子
+        drawStones(canvas);
+
         super.draw(canvas);
 
+        // 绘制分析叠加层
+        mAnalysisLayer.draw(canvas, getWidth(), getHeight(), mSquareSize);
+
         // 绘制高亮交叉点
         drawHighlightIntersection(canvas);
     }
 
-    private void drawTopCoordinate(Canvas canvas, int i) {
-        int coordinateTextSize = mSquareSize / 2;
-        char c = 'A';
-        char cc = (char) (c + i);
-        String abscissa;
-        float width;
-        if (cc >= 'I') {
-            abscissa = "" + (char) (cc + 1);
-        } else {
-            abscissa = "" + cc;
-        }
-        width = mBoardPaint.measureText(abscissa);
-        canvas.drawText(abscissa, i * mSquareSize - width / 2, -coordinateTextSize / 2, mBoardPaint);
+    /**
+     * 检查棋盘静态层缓存是否仍然有效
+     *
+     * @return
+     */
+    private boolean isBoardCacheValid() {
+        return mBoardCacheBitmap != null && !mBoardCacheBitmap.isRecycled()
+                && mBoardCacheBitmap.getWidth() == getWidth()
+                && mBoardCacheBitmap.getHeight() == getHeight()
+                && mCachedSquareSize == mSquareSize
+                && mCachedBoardSize == mBoardSize
+                && mCachedShowCoordinate == mIsShowCoordinate
+                && mCachedBoardSpec == mRenderSpec.mBoardSpec;
     }
 
-    private void drawBottomCoordinate(Canvas canvas, int i) {
-        int coordinateTextSize = mSquareSize / 2;
-        char c = 'A';
-        char cc = (char) (c + i);
-        String abscissa;
-        float width;
-        if (cc >= 'I') {
-            abscissa = "" + (char) (cc + 1);
+    /**
+     * 重新生成棋盘静态层缓存
+     */
+    private void rebuildBoardCache() {
+        int width = getWidth();
+        int height = getHeight();
+        if (mBoardCacheBitmap == null || mBoardCacheBitmap.isRecycled()
+                || mBoardCacheBitmap.getWidth() != width || mBoardCacheBitmap.getHeight() != height) {
+            releaseBoardCache();
+            try {
+                mBoardCacheBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                e.printStackTrace();
+                return;
+            }
         } else {
-            abscissa = "" + cc;
+            mBoardCacheBitmap.eraseColor(Color.TRANSPARENT);
         }
-        width = mBoardPaint.measureText(abscissa);
-        canvas.drawText(abscissa, i * mSquareSize - width / 2, mBoardSize * mSquareSize - coordinateTextSize / 2, mBoardPaint);
+        Canvas cacheCanvas = new Canvas(mBoardCacheBitmap);
+        drawStaticBoard(cacheCanvas);
+
+        mCachedSquareSize = mSquareSize;
+        mCachedBoardSize = mBoardSize;
+        mCachedShowCoordinate = mIsShowCoordinate;
+        mCachedBoardSpec = mRenderSpec.mBoardSpec;
     }
 
-    private void drawLeftCoordinate(Canvas canvas, int i) {
-        int coordinateTextSize = mSquareSize / 2;
-        String ordinate = "" + (i + 1);
-        float width = mBoardPaint.measureText(ordinate);
-        canvas.drawText(ordinate, -mSquareSize / 2 - width / 2,
-                (mBoardSize - i - 1) * mSquareSize + coordinateTextSize / 2, mBoardPaint);
+    /**
+     * 释放棋盘静态层缓存
+     */
+    private void releaseBoardCache() {
+        if (mBoardCacheBitmap != null) {
+            mBoardCacheBitmap.recycle();
+            mBoardCacheBitmap = null;
+        }
+        mCachedBoardSpec = null;
     }
 
-    private void drawRightCoordinate(Canvas canvas, int i) {
-        int coordinateTextSize = mSquareSize / 2;
-        String ordinate = "" + (i + 1);
-        float width = mBoardPaint.measureText(ordinate);
-        canvas.drawText(ordinate, mBoardSize * mSquareSize - mSquareSize / 2 - width / 2,
-                (mBoardSize - i - 1) * mSquareSize + coordinateTextSize / 2, mBoardPaint);
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        releaseBoardCache();
+        releaseShadowLayer();
+        mAnalysisLayer.release();
     }
 
     /**
      * 绘制棋盘
+     * <p>
+     * 背景、棋盘线、星位及坐标属于静态层，绘制到缓存位图后直接贴图，每帧只额外绘制高亮坐标
      *
      * @param canvas
      */
     private void drawBoard(Canvas canvas) {
         checkGoTheme();
-        int coordinateTextSize = mSquareSize / 2;
-        mBoardPaint.setTextSize(coordinateTextSize);
-        mBoardPaint.setStyle(Paint.Style.FILL);
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        if (!isBoardCacheValid()) {
+            rebuildBoardCache();
+        }
+        if (mBoardCacheBitmap != null) {
+            canvas.drawBitmap(mBoardCacheBitmap, 0, 0, null);
+        } else {
+            // 缓存创建失败时直接绘制
+            drawStaticBoard(canvas);
+        }
+
+        // 绘制高亮坐标
+        if (mIsShowHighlightCoordinates && mHighlightIntersection != null) {
+            mBoardRenderer.setSize(mBoardSize, mSquareSize);
+            mBoardRenderer.drawCoordinates(canvas, mHighlightIntersection, Color.RED);
+        }
+    }
+
+    /**
+     * 绘制棋盘静态层
+     *
+     * @param canvas
+     */
+    private void drawStaticBoard(Canvas canvas) {
+        mBoardRenderer.setSize(mBoardSize, mSquareSize);
+        mBoardRenderer.drawStaticBoard(canvas, mRenderSpec.mBoardSpec, getWidth(), getHeight(), mIsShowCoordinate);
+    }
 
-        Drawable drawable = mGoTheme.mBoardTheme.getBackground();
-        drawable.setBounds(0, 0, getWidth(), getHeight());
-        drawable.draw(canvas);
+    /**
+     * 获取阴影相对棋子左边缘的偏移
+     *
+     * @return
+     */
+    private int getShadowLeftOffset() {
+        return Math.round(Math.round((mSquareSize - mStoneSpace) / 3f) * 2 / 5f);
+    }
 
-        canvas.translate(mSquareSize, mSquareSize);
+    /**
+     * 获取阴影相对棋子上边缘的偏移
+     *
+     * @return
+     */
+    private int getShadowTopOffset() {
+        return Math.round(Math.round((mSquareSize - mStoneSpace) / 3f) / 5f);
+    }
 
-        // 1，绘制棋盘坐标
-        if (mIsShowCoordinate) {
-            mBoardPaint.setColor(mGoTheme.mBoardTheme.getBorderColor());
-            // 横坐标
-            for (int i = 0; i < mBoardSize; i++) {
-                drawTopCoordinate(canvas, i);
-            }
-            for (int i = 0; i < mBoardSize; i++) {
-                drawBottomCoordinate(canvas, i);
-            }
+    /**
+     * 获取阴影超出棋子右边缘的距离
+     *
+     * @return
+     */
+    private int getShadowRightOffset() {
+        return Math.round(Math.round((mSquareSize - mStoneSpace) / 3f) * 3 / 5f);
+    }
+
+    /**
+     * 获取阴影超出棋子下边缘的距离
+     *
+     * @return
+     */
+    private int getShadowBottomOffset() {
+        return Math.round(Math.round((mSquareSize - mStoneSpace) / 3f) * 4 / 5f);
+    }
 
-            // 纵坐标
-            for (int i = 0; i < mBoardSize; i++) {
-                drawLeftCoordinate(canvas, i);
+    /**
+     * 检查阴影层是否仍然有效
+     *
+     * @return
+     */
+    private boolean isShadowLayerValid() {
+        return mIsShadowLayerValid && mShadowLayerBitmap != null && !mShadowLayerBitmap.isRecycled()
+                && mShadowLayerBitmap.getWidth() == getWidth()
+                && mShadowLayerBitmap.getHeight() == getHeight()
+                && mShadowSquareSize == mSquareSize
+                && mShadowStoneSpace == mStoneSpace;
+    }
+
+    /**
+     * 重新生成预缩放的阴影图及完整的阴影层
+     */
+    private void rebuildShadowLayer() {
+        mIsShadowLayerValid = false;
+        if (mShadowBitmap == null || mShadowBitmap.isRecycled()) {
+            return;
+        }
+        int width = getWidth();
+        int height = getHeight();
+        int spriteWidth = mSquareSize + getShadowLeftOffset() + getShadowRightOffset();
+        int spriteHeight = mSquareSize + getShadowTopOffset() + getShadowBottomOffset();
+        try {
+            if (mShadowSprite == null || mShadowSprite.getWidth() != spriteWidth || mShadowSprite.getHeight() != spriteHeight) {
+                mShadowSprite = Bitmap.createScaledBitmap(mShadowBitmap, spriteWidth, spriteHeight, true);
             }
-            for (int i = 0; i < mBoardSize; i++) {
-                drawRightCoordinate(canvas, i);
+            if (mShadowLayerBitmap == null || mShadowLayerBitmap.isRecycled()
+                    || mShadowLayerBitmap.getWidth() != width || mShadowLayerBitmap.getHeight() != height) {
+                releaseShadowLayer();
+                mShadowLayerBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                mShadowLayerCanvas = new Canvas(mShadowLayerBitmap);
+            } else {
+                mShadowLayerBitmap.eraseColor(Color.TRANSPARENT);
             }
+        } catch (OutOfMemoryError e) {
+            e.printStackTrace();
+            return;
         }
-
-        // 绘制高亮坐标
-        if (mIsShowHighlightCoordinates && mHighlightIntersection != null) {
-            mBoardPaint.setColor(Color.RED);
-            // 横坐标
-            drawTopCoordinate(canvas, mHighlightIntersection.x);
-            drawBottomCoordinate(canvas, mHighlightIntersection.x);
-            // 纵坐标
-            drawLeftCoordinate(canvas, mBoardSize - mHighlightIntersection.y - 1);
-            drawRightCoordinate(canvas, mBoardSize - mHighlightIntersection.y - 1);
-        }
-
-        // 2，绘制棋盘线
-        for (int i = 0; i < mBoardSize; i++) {
-            if (i == 0 || i == mBoardSize - 1) {
-                mBoardPaint.setColor(mGoTheme.mBoardTheme.getBorderColor());
-                mBoardPaint.setStrokeWidth(mGoTheme.mBoardTheme.mBorderWidth);
-            } else {
-                mBoardPaint.setColor(mGoTheme.mBoardTheme.getLineColor());
-                mBoardPaint.setStrokeWidth(mGoTheme.mBoardTheme.mLineWidth);
+        for (int i = 0; i < mStoneColors.length; i++) {
+            if (mStoneColors[i] != COLOR_EMPTY) {
+                drawShadowSprite(mShadowLayerCanvas, i % mBoardSize, i / mBoardSize);
             }
-            canvas.drawLine(0, i * mSquareSize, mSquareSize * (mBoardSize - 1), i * mSquareSize, mBoardPaint);
-            canvas.drawLine(i * mSquareSize, 0, i * mSquareSize, mSquareSize * (mBoardSize - 1), mBoardPaint);
         }
 
-        // 3，绘制星位
-        mBoardPaint.setColor(mGoTheme.mBoardTheme.getLineColor());
-        for (int i = 0; i < mBoardSize; i++) {
-            for (int j = 0; j < mBoardSize; j++) {
-                switch (mBoardSize) {
-                    case 9:
-                        if ((i == 2 || i == 6) && (j == 2 || j == 6) || (i == 4 && j == 4)) {
-                            canvas.drawCircle(i * mSquareSize, j * mSquareSize, mSquareSize / 8, mBoardPaint);
-                        }
-                        break;
-                    case 13:
-                        if ((i == 3 || i == 9) && (j == 3 || j == 9) || (i == 6 && j == 6)) {
-                            canvas.drawCircle(i * mSquareSize, j * mSquareSize, mSquareSize / 8, mBoardPaint);
-                        }
-                        break;
-                    case 19:
-                        if ((i == 3 || i == 9 || i == 15) && (j == 3 || j == 9 || j == 15)) {
-                            canvas.drawCircle(i * mSquareSize, j * mSquareSize, mSquareSize / 8, mBoardPaint);
-                        }
-                        break;
+        mShadowSquareSize = mSquareSize;
+        mShadowStoneSpace = mStoneSpace;
+        mIsShadowLayerValid = true;
+    }
+
+    /**
+     * 释放阴影层
+     */
+    private void releaseShadowLayer() {
+        if (mShadowLayerBitmap != null) {
+            mShadowLayerBitmap.recycle();
+            mShadowLayerBitmap = null;
+            mShadowLayerCanvas = null;
+        }
+        mIsShadowLayerValid = false;
+    }
+
+    /**
+     * 在指定交叉点绘制预缩放的阴影图
+     *
+     * @param canvas
+     * @param x
+     * @param y
+     */
+    private void drawShadowSprite(Canvas canvas, int x, int y) {
+        int left = Math.round((x + 0.5f) * mSquareSize) - getShadowLeftOffset();
+        int top = Math.round((y + 0.5f) * mSquareSize) - getShadowTopOffset();
+        canvas.drawBitmap(mShadowSprite, left, top, null);
+    }
+
+    /**
+     * 在阴影层中增加指定交叉点的阴影
+     *
+     * @param x
+     * @param y
+     */
+    private void addStoneShadow(int x, int y) {
+        if (isShadowLayerValid()) {
+            drawShadowSprite(mShadowLayerCanvas, x, y);
+        }
+    }
+
+    /**
+     * 在阴影层中擦除指定交叉点的阴影，并补绘与该区域重叠的相邻棋子阴影
+     *
+     * @param x
+     * @param y
+     */
+    private void removeStoneShadow(int x, int y) {
+        if (!isShadowLayerValid()) {
+            return;
+        }
+        int left = Math.round((x + 0.5f) * mSquareSize) - getShadowLeftOffset();
+        int top = Math.round((y + 0.5f) * mSquareSize) - getShadowTopOffset();
+        int saveCount = mShadowLayerCanvas.save();
+        mShadowLayerCanvas.clipRect(left, top, left + mShadowSprite.getWidth(), top + mShadowSprite.getHeight());
+        mShadowLayerCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        for (int j = Math.max(0, y - 1); j <= Math.min(mBoardSize - 1, y + 1); j++) {
+            for (int i = Math.max(0, x - 1); i <= Math.min(mBoardSize - 1, x + 1); i++) {
+                if (mStoneColors[i + j * mBoardSize] != COLOR_EMPTY) {
+                    drawShadowSprite(mShadowLayerCanvas, i, j);
                 }
             }
         }
-
-        canvas.translate(-mSquareSize, -mSquareSize);
+        mShadowLayerCanvas.restoreToCount(saveCount);
     }
 
     /**
      * 绘制棋子阴影
+     * <p>
+     * 阴影保存在单独的阴影层中，增删棋子时增量更新，每帧只需贴图一次
      *
      * @param canvas
      */
     private void drawStoneShadow(Canvas canvas) {
-        if (!mGoTheme.mBoardTheme.mStoneShadowOn) {
+        if (!mRenderSpec.mBoardSpec.mStoneShadowOn || getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        if (!isShadowLayerValid()) {
+            rebuildShadowLayer();
+        }
+        if (mIsShadowLayerValid) {
+            canvas.drawBitmap(mShadowLayerBitmap, 0, 0, null);
+        }
+    }
+
+    /**
+     * 绘制棋子，仅在RENDER_MODE_CANVAS模式下使用
+     *
+     * @param canvas
+     */
+    private void drawStones(Canvas canvas) {
+        if (mRenderMode != RENDER_MODE_CANVAS) {
             return;
         }
-        for (StoneView view : mStoneViewMap.values()) {
-            if (mShadowBitmap != null && !mShadowBitmap.isRecycled()) {
-                int shadowOffsetX = Math.round((mSquareSize - mStoneSpace) / 3f);
-                int shadowOffsetY = Math.round((mSquareSize - mStoneSpace) / 3f);
-                canvas.drawBitmap(mShadowBitmap,
-                        new Rect(0, 0, mShadowBitmap.getWidth(), mShadowBitmap.getHeight()),
-                        new Rect(view.getLeft() - Math.round(shadowOffsetX * 2 / 5f),
-                                view.getTop() - Math.round(shadowOffsetY / 5f),
-                                view.getRight() + Math.round(shadowOffsetX * 3 / 5f),
-                                view.getBottom() + Math.round(shadowOffsetY * 4 / 5f)),
-                        mBoardPaint);
+        for (StoneDrawable drawable : mStoneSlots) {
+            if (drawable != null) {
+                drawable.draw(canvas);
             }
         }
+        for (int i = 0; i < mRemovingDrawables.size(); i++) {
+            mRemovingDrawables.get(i).draw(canvas);
+        }
     }
 
     /**
@@ -741,7 +1816,7 @@ public class BoardView extends RelativeLayout {
     private void drawHighlightIntersection(Canvas canvas) {
         if (mHighlightIntersection != null) {
             mBoardPaint.setColor(Color.RED);
-            mBoardPaint.setStrokeWidth(3);
+            mBoardPaint.setStrokeWidth(HIGHLIGHT_STROKE_WIDTH);
             mBoardPaint.setStyle(Paint.Style.STROKE);
 
             canvas.translate(mSquareSize, mSquareSize);
@@ -4,6 +4,8 @@ import java.io.Serializable;
 
 /**
  * 交叉点模型
+ * <p>
+ * 通过valueOf获取的交叉点是共享的规范实例，不应修改其字段；需要修改时请先clone
  *
  * @author like
  * @date 2017-12-20
@@ -12,6 +14,21 @@ public class Intersection implements Cloneable, Serializable {
 
     public static final long serialVersionUID = 42L;
 
+    /**
+     * 交叉点缓存池覆盖的最大棋盘大小
+     */
+    public static final int MAX_POOL_SIZE = 25;
+
+    private static final Intersection[] POOL = new Intersection[MAX_POOL_SIZE * MAX_POOL_SIZE];
+
+    static {
+        for (int y = 0; y < MAX_POOL_SIZE; y++) {
+            for (int x = 0; x < MAX_POOL_SIZE; x++) {
+                POOL[x + y * MAX_POOL_SIZE] = new Intersection(x, y);
+            }
+        }
+    }
+
     public int x;
     public int y;
 
@@ -20,11 +37,55 @@ public class Intersection implements Cloneable, Serializable {
         this.y = y;
     }
 
+    /**
+     * 获取交叉点的规范实例
+     * <p>
+     * 坐标在缓存池范围内时返回共享实例，不产生新对象；超出范围时新建实例
+     *
+     * @param x
+     * @param y
+     * @return
+     */
+    public static Intersection valueOf(int x, int y) {
+        if (x >= 0 && x < MAX_POOL_SIZE && y >= 0 && y < MAX_POOL_SIZE) {
+            return POOL[x + y * MAX_POOL_SIZE];
+        }
+        return new Intersection(x, y);
+    }
+
+    /**
+     * 判断是否为缓存池中的规范实例
+     *
+     * @return
+     */
+    public boolean isCanonical() {
+        return x >= 0 && x < MAX_POOL_SIZE && y >= 0 && y < MAX_POOL_SIZE
+                && POOL[x + y * MAX_POOL_SIZE] == this;
+    }
+
+    /**
+     * 获取与当前交叉点坐标相同的规范实例
+     *
+     * @return
+     */
+    public Intersection intern() {
+        return valueOf(x, y);
+    }
+
     @Override
     public Intersection clone() throws CloneNotSupportedException {
         return (Intersection) super.clone();
     }
 
+    /**
+     * 反序列化时还原为规范实例
+     *
+     * @return
+     */
+    private Object readResolve() {
+        return valueOf(x, y);
+    }
+
     @Override
     public boolean equals(Object other) {
         return !(other == null || this.getClass() != other.getClass())
@@ -32,7 +93,7 @@ public class Intersection implements Cloneable, Serializable {
     }
 
     @Override
-    public int hashCode() { return ((Integer) (x + 19 * y)).hashCode(); }
+    public int hashCode() { return x + 19 * y; }
 
     @Override
     public String toString() {
@@ -0,0 +1,154 @@
+package cn.ezandroid.lib.board;
+
+import java.io.Serializable;
+
+/**
+ * 不可变的着手模型
+ * <p>
+ * 颜色、坐标及手数压缩存储在一个long中，交叉点使用规范实例，复制和比较均不产生额外对象
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public final class Move implements Serializable {
+
+    public static final long serialVersionUID = 42L;
+
+    private static final long PASS_FLAG = 1L << 33;
+
+    private final long mValue;
+
+    private Move(long value) {
+        mValue = value;
+    }
+
+    /**
+     * 创建落子着手
+     *
+     * @param color
+     * @param x
+     * @param y
+     * @param number
+     * @return
+     */
+    public static Move valueOf(StoneColor color, int x, int y, int number) {
+        return new Move(pack(color, x & 0xFF, y & 0xFF, number));
+    }
+
+    /**
+     * 创建停一手着手
+     *
+     * @param color
+     * @param number
+     * @return
+     */
+    public static Move pass(StoneColor color, int number) {
+        return new Move(pack(color, 0, 0, number) | PASS_FLAG);
+    }
+
+    /**
+     * 根据棋子创建着手
+     *
+     * @param stone
+     * @return
+     */
+    public static Move valueOf(Stone stone) {
+        if (stone.isPassStone()) {
+            return pass(stone.color, stone.number);
+        }
+        return valueOf(stone.color, stone.intersection.x, stone.intersection.y, stone.number);
+    }
+
+    private static long pack(StoneColor color, int x, int y, int number) {
+        return (number & 0xFFFFFFFFL)
+                | ((color == StoneColor.WHITE ? 1L : 0L) << 32)
+                | ((long) x << 40)
+                | ((long) y << 48);
+    }
+
+    /**
+     * 获取颜色
+     *
+     * @return
+     */
+    public StoneColor getColor() {
+        return ((mValue >>> 32) & 1) == 1 ? StoneColor.WHITE : StoneColor.BLACK;
+    }
+
+    /**
+     * 是否为停一手
+     *
+     * @return
+     */
+    public boolean isPass() {
+        return (mValue & PASS_FLAG) != 0;
+    }
+
+    /**
+     * 获取横坐标，停一手时返回-1
+     *
+     * @return
+     */
+    public int getX() {
+        return isPass() ? -1 : (int) ((mValue >>> 40) & 0xFF);
+    }
+
+    /**
+     * 获取纵坐标，停一手时返回-1
+     *
+     * @return
+     */
+    public int getY() {
+        return isPass() ? -1 : (int) ((mValue >>> 48) & 0xFF);
+    }
+
+    /**
+     * 获取交叉点，停一手时返回null
+     *
+     * @return
+     */
+    public Intersection getIntersection() {
+        return isPass() ? null : Intersection.valueOf(getX(), getY());
+    }
+
+    /**
+     * 获取手数
+     *
+     * @return
+     */
+    public int getNumber() {
+        return (int) mValue;
+    }
+
+    /**
+     * 转换为可修改的棋子
+     *
+     * @return
+     */
+    public Stone toStone() {
+        Stone stone = new Stone();
+        stone.color = getColor();
+        stone.intersection = getIntersection();
+        stone.number = getNumber();
+        return stone;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof Move && mValue == ((Move) o).mValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (mValue ^ (mValue >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "Move{" +
+                "color=" + getColor() +
+                ", intersection=" + getIntersection() +
+                ", number=" + getNumber() +
+                '}';
+    }
+}
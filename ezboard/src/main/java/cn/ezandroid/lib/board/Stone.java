@@ -30,6 +30,15 @@ public class Stone implements Cloneable, Serializable {
         return clone;
     }
 
+    /**
+     * 转换为不可变的着手
+     *
+     * @return
+     */
+    public Move toMove() {
+        return Move.valueOf(this);
+    }
+
     @Override
     public String toString() {
         return "Stone{" +
@@ -0,0 +1,488 @@
+package cn.ezandroid.lib.board;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import cn.ezandroid.lib.board.theme.GoTheme;
+
+import static cn.ezandroid.lib.board.theme.GoTheme.INVALID_VALUE;
+
+/**
+ * 棋子绘制对象
+ * <p>
+ * 负责在指定区域内绘制棋子、手数及高亮标记，既可以由StoneView承载，也可以由BoardView直接绘制到棋盘画布上
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class StoneDrawable extends Drawable {
+
+    private static String[] sNumberTexts = new String[512]; // 手数文字缓存
+
+    private Paint mStonePaint;
+
+    private Stone mStone;
+
+    private int mStoneSpace = 4; // 棋子间距
+
+    private boolean mIsHighlight; // 棋子是否高亮
+
+    private boolean mIsDrawNumber = true; // 是否绘制棋子手数
+
+    private int mDrawNumber; // 要绘制的棋子手数，优先于Stone.number
+
+    private int mAlpha = 255;
+
+    private int mTextureIndex; // 棋子使用的纹理索引，设置棋子或主题时确定，之后保持不变
+    private GoTheme.ScaledTextures mScaledTextures; // 使用者按当前棋子尺寸预缩放的纹理
+    private final Rect mTextureBounds = new Rect(); // 没有预缩放纹理时原图的绘制区域
+
+    long mNumberKey; // 在BoardView手数索引中的键
+
+    private GoTheme.StoneTheme mStoneTheme; // 棋子主题样式
+    private GoTheme.MarkTheme mMarkTheme; // 标记主题样式
+
+    private GoTheme.StoneSpec mStoneSpec; // 编译后的棋子主题样式，绘制时直接读取
+    private GoTheme.MarkSpec mMarkSpec; // 编译后的标记主题样式，绘制时直接读取
+
+    private Rect mTextBounds = new Rect();
+
+    // 手数文字布局缓存
+    private String mNumberText;
+    private float mNumberTextSize;
+    private float mNumberX;
+    private float mNumberY;
+    private int mNumberLayoutNumber = -1;
+    private int mNumberLayoutWidth = -1;
+    private int mNumberLayoutHeight = -1;
+
+    // 高亮三角标记缓存
+    private Path mHighlightPath = new Path();
+    private int mHighlightPathWidth = -1;
+    private int mHighlightPathHeight = -1;
+
+    public StoneDrawable() {
+        mStonePaint = new Paint();
+        mStonePaint.setAntiAlias(true);
+        mStonePaint.setFilterBitmap(true);
+    }
+
+    /**
+     * 设置棋子主题
+     *
+     * @param stoneTheme
+     */
+    public void setStoneTheme(GoTheme.StoneTheme stoneTheme) {
+        setStoneTheme(stoneTheme, stoneTheme != null ? stoneTheme.getSpec() : null);
+    }
+
+    /**
+     * 设置棋子主题及指定的编译结果，用于与棋盘使用同一次编译的主题绘制
+     *
+     * @param stoneTheme
+     * @param stoneSpec
+     */
+    void setStoneTheme(GoTheme.StoneTheme stoneTheme, GoTheme.StoneSpec stoneSpec) {
+        if (mStoneTheme != stoneTheme || mStoneSpec != stoneSpec) {
+            mStoneTheme = stoneTheme;
+            mStoneSpec = stoneSpec;
+            updateTextureIndex();
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * 获取棋子主题
+     *
+     * @return
+     */
+    public GoTheme.StoneTheme getStoneTheme() {
+        return mStoneTheme;
+    }
+
+    /**
+     * 设置标记主题
+     *
+     * @param markTheme
+     */
+    public void setMarkTheme(GoTheme.MarkTheme markTheme) {
+        setMarkTheme(markTheme, markTheme != null ? markTheme.getSpec() : null);
+    }
+
+    /**
+     * 设置标记主题及指定的编译结果
+     *
+     * @param markTheme
+     * @param markSpec
+     */
+    void setMarkTheme(GoTheme.MarkTheme markTheme, GoTheme.MarkSpec markSpec) {
+        if (mMarkTheme != markTheme || mMarkSpec != markSpec) {
+            mMarkTheme = markTheme;
+            mMarkSpec = markSpec;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * 获取标记主题
+     *
+     * @return
+     */
+    public GoTheme.MarkTheme getMarkTheme() {
+        return mMarkTheme;
+    }
+
+    /**
+     * 设置是否绘制棋子手数
+     *
+     * @param drawNumber
+     */
+    public void setDrawNumber(boolean drawNumber) {
+        if (mIsDrawNumber != drawNumber) {
+            mIsDrawNumber = drawNumber;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * 获取是否绘制棋子手数
+     *
+     * @return
+     */
+    public boolean isDrawNumber() {
+        return mIsDrawNumber;
+    }
+
+    /**
+     * 设置要绘制的棋子手数
+     *
+     * @param drawNumber
+     */
+    public void setDrawNumber(int drawNumber) {
+        mDrawNumber = drawNumber;
+    }
+
+    /**
+     * 获取要绘制的棋子手数
+     *
+     * @return
+     */
+    public int getDrawNumber() {
+        return mDrawNumber;
+    }
+
+    /**
+     * 设置棋子是否高亮
+     *
+     * @param highlight
+     */
+    public void setHighlight(boolean highlight) {
+        if (mIsHighlight != highlight) {
+            mIsHighlight = highlight;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * 获取棋子是否高亮
+     *
+     * @return
+     */
+    public boolean isHighlight() {
+        return mIsHighlight;
+    }
+
+    /**
+     * 设置棋子间距
+     *
+     * @param stoneSpace
+     */
+    public void setStoneSpace(int stoneSpace) {
+        if (mStoneSpace != stoneSpace) {
+            mStoneSpace = stoneSpace;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * 获取棋子间距
+     *
+     * @return
+     */
+    public int getStoneSpace() {
+        return mStoneSpace;
+    }
+
+    /**
+     * 设置棋子
+     *
+     * @param stone
+     */
+    public void setStone(Stone stone) {
+        mStone = stone;
+        updateTextureIndex();
+    }
+
+    /**
+     * 设置预缩放的纹理，由使用者在棋子尺寸或主题变化时统一创建；主题或尺寸与绘制时不一致的纹理不会被使用
+     *
+     * @param scaledTextures
+     */
+    void setScaledTextures(GoTheme.ScaledTextures scaledTextures) {
+        if (mScaledTextures != scaledTextures) {
+            mScaledTextures = scaledTextures;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * 获取指定格子大小及棋子间距下的棋子尺寸，即预缩放纹理的尺寸
+     *
+     * @param squareSize
+     * @param stoneSpace
+     * @return
+     */
+    static int getTextureSize(int squareSize, int stoneSpace) {
+        return squareSize - stoneSpace / 2 * 2;
+    }
+
+    /**
+     * 更换为同一交叉点上手数不同的同色棋子，保留已选择的纹理，只重新计算手数文字
+     *
+     * @param stone
+     */
+    void replaceStone(Stone stone) {
+        mStone = stone;
+        mNumberLayoutNumber = -1;
+        invalidateSelf();
+    }
+
+    /**
+     * 获取棋子
+     *
+     * @return
+     */
+    public Stone getStone() {
+        return mStone;
+    }
+
+    /**
+     * 为棋子选择纹理
+     */
+    private void updateTextureIndex() {
+        if (mStone != null && mStone.intersection != null && mStoneSpec != null) {
+            mTextureIndex = mStoneSpec.selectTextureIndex(mStone.intersection.x, mStone.intersection.y, mStone.number);
+        } else {
+            mTextureIndex = 0;
+        }
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (mAlpha != alpha) {
+            mAlpha = alpha;
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return mAlpha;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        mStonePaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (mStone == null || mStoneSpec == null) {
+            return;
+        }
+        Rect bounds = getBounds();
+        canvas.translate(bounds.left, bounds.top);
+
+        // 绘制棋子
+        drawStone(canvas, bounds.width(), bounds.height());
+
+        // 绘制手数
+        drawNumber(canvas, bounds.width(), bounds.height());
+
+        canvas.translate(-bounds.left, -bounds.top);
+    }
+
+    /**
+     * 绘制棋子
+     *
+     * @param canvas
+     * @param width
+     * @param height
+     */
+    private void drawStone(Canvas canvas, int width, int height) {
+        // 绘制棋子
+        GoTheme.StoneSpec spec = mStoneSpec;
+        int index = mTextureIndex;
+        GoTheme.ScaledTextures scaledTextures = mScaledTextures;
+        Bitmap scaled = scaledTextures != null && scaledTextures.matches(spec, getTextureSize(width, mStoneSpace))
+                ? scaledTextures.get(index) : null;
+        if (scaled != null) {
+            // 图片棋子直接绘制预缩放的纹理，避免每次绘制时重新采样原图
+            mStonePaint.setAlpha(mAlpha);
+            canvas.drawBitmap(scaled, mStoneSpace / 2, mStoneSpace / 2, mStonePaint);
+        } else if (index < spec.getTextureCount() && spec.isColorTexture(index)) {
+            // 纯色棋子
+            mStonePaint.setColor(spec.getTextureColor(index));
+            mStonePaint.setAlpha(mAlpha);
+            mStonePaint.setStyle(Paint.Style.FILL);
+            canvas.drawCircle(width / 2, height / 2, width / 2 - mStoneSpace / 2, mStonePaint);
+        } else if (index < spec.getTextureCount()) {
+            Bitmap texture = spec.getTextureBitmap(index);
+            if (texture != null) {
+                // 图片棋子（尺寸刚变化或预缩放失败时），直接缩放原图
+                mTextureBounds.set(mStoneSpace / 2, mStoneSpace / 2, width - mStoneSpace / 2, height - mStoneSpace / 2);
+                mStonePaint.setAlpha(mAlpha);
+                canvas.drawBitmap(texture, null, mTextureBounds, mStonePaint);
+            } else {
+                // 其他类型的纹理，Drawable在棋盘与缩略图渲染线程间共享
+                Drawable drawable = spec.getTexture(index);
+                synchronized (drawable) {
+                    drawable.setBounds(mStoneSpace / 2, mStoneSpace / 2, width - mStoneSpace / 2, height - mStoneSpace / 2);
+                    drawable.setAlpha(mAlpha);
+                    drawable.draw(canvas);
+                    drawable.setAlpha(255);
+                }
+            }
+        }
+
+        // 绘制棋子边框
+        if (spec.mBorderColor != INVALID_VALUE) {
+            mStonePaint.setColor(spec.mBorderColor);
+            mStonePaint.setAlpha(mAlpha);
+            mStonePaint.setStyle(Paint.Style.STROKE);
+            mStonePaint.setStrokeWidth(spec.mBorderWidth);
+            canvas.drawCircle(width / 2, height / 2, width / 2 - mStoneSpace / 2, mStonePaint);
+        }
+    }
+
+    /**
+     * 绘制手数
+     *
+     * @param canvas
+     * @param width
+     * @param height
+     */
+    private void drawNumber(Canvas canvas, int width, int height) {
+        int drawNumber = mDrawNumber > 0 ? mDrawNumber : mStone.number;
+        if (!mIsDrawNumber || drawNumber <= 0) {
+            // 不显示手数时，高亮使用红点标记
+            if (mIsHighlight && mMarkSpec != null) {
+                mStonePaint.setColor(mMarkSpec.mHighLightColor);
+                mStonePaint.setAlpha(mAlpha);
+                mStonePaint.setStyle(Paint.Style.FILL);
+                canvas.drawCircle(width / 2, height / 2, width / 6, mStonePaint);
+            }
+            return;
+        }
+        if (mNumberLayoutNumber != drawNumber || mNumberLayoutWidth != width || mNumberLayoutHeight != height) {
+            layoutNumber(drawNumber, width, height);
+        }
+        mStonePaint.setStyle(Paint.Style.FILL);
+        mStonePaint.setTextSize(mNumberTextSize);
+        mStonePaint.setStrokeWidth(0);
+        if (mStone.color == StoneColor.BLACK) {
+            mStonePaint.setColor(Color.WHITE);
+        } else {
+            mStonePaint.setColor(Color.BLACK);
+        }
+        mStonePaint.setAlpha(mAlpha);
+        canvas.drawText(mNumberText, mNumberX, mNumberY, mStonePaint);
+        // 显示手数时，高亮使用三角标记
+        if (mIsHighlight) {
+            if (mStone.color == StoneColor.BLACK) {
+                mStonePaint.setColor(Color.RED);
+            } else {
+                mStonePaint.setColor(Color.BLUE);
+            }
+            mStonePaint.setAlpha(mAlpha);
+            if (mHighlightPathWidth != width || mHighlightPathHeight != height) {
+                mHighlightPath.rewind();
+                mHighlightPath.moveTo(width / 24f, height / 24f);
+                mHighlightPath.lineTo(width / 3f, height / 24f);
+                mHighlightPath.lineTo(width / 24f, height / 3f);
+                mHighlightPath.close();
+                mHighlightPathWidth = width;
+                mHighlightPathHeight = height;
+            }
+            canvas.drawPath(mHighlightPath, mStonePaint);
+        }
+    }
+
+    /**
+     * 计算手数文字的大小及位置，只在手数或棋子尺寸变化时调用
+     *
+     * @param drawNumber
+     * @param width
+     * @param height
+     */
+    private void layoutNumber(int drawNumber, int width, int height) {
+        float textSize;
+        if (drawNumber < 10) {
+            textSize = width / 1.5f;
+        } else if (drawNumber < 100) {
+            textSize = width / 2f;
+        } else {
+            textSize = width / 2.5f;
+        }
+        mStonePaint.setTextSize(textSize);
+        String number = getNumberText(drawNumber);
+        float textWidth = mStonePaint.measureText(number);
+        mStonePaint.getTextBounds(number, 0, number.length(), mTextBounds);
+
+        mNumberText = number;
+        mNumberTextSize = textSize;
+        mNumberX = (width - textWidth) / 2f;
+        mNumberY = (height + mTextBounds.height()) / 2f;
+        mNumberLayoutNumber = drawNumber;
+        mNumberLayoutWidth = width;
+        mNumberLayoutHeight = height;
+    }
+
+    /**
+     * 获取手数对应的文字，所有棋子共享同一份缓存
+     *
+     * @param number
+     * @return
+     */
+    private static String getNumberText(int number) {
+        String[] texts = sNumberTexts;
+        if (number >= texts.length) {
+            int length = texts.length;
+            while (length <= number) {
+                length *= 2;
+            }
+            String[] newTexts = new String[length];
+            System.arraycopy(texts, 0, newTexts, 0, texts.length);
+            sNumberTexts = texts = newTexts;
+        }
+        String text = texts[number];
+        if (text == null) {
+            text = String.valueOf(number);
+            texts[number] = text;
+        }
+        return text;
+    }
+}
@@ -2,56 +2,51 @@ package cn.ezandroid.lib.board;
 
 import android.content.Context;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.Rect;
-import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
 import android.widget.TextView;
 
 import cn.ezandroid.lib.board.theme.GoTheme;
 
-import static cn.ezandroid.lib.board.theme.GoTheme.INVALID_VALUE;
-
 /**
  * 棋子显示控件
+ * <p>
+ * 实际的绘制工作由StoneDrawable完成
  *
  * @author like
  * @date 2017-12-21
  */
 public class StoneView extends TextView {
 
-    private Paint mStonePaint;
-
-    private Stone mStone;
-
-    private int mStoneSpace = 4; // 棋子间距
-
-    private boolean mIsHighlight; // 棋子是否高亮
-
-    private boolean mIsDrawNumber = true; // 是否绘制棋子手数
-
-    private int mDrawNumber; // 要绘制的棋子手数，优先于Stone.number
-
-    private GoTheme.StoneTheme mStoneTheme; // 棋子主题样式
-    private GoTheme.MarkTheme mMarkTheme; // 标记主题样式
+    private StoneDrawable mStoneDrawable;
 
     public StoneView(Context context) {
         super(context);
-        initStone();
+        initStone(new StoneDrawable());
     }
 
     public StoneView(Context context, AttributeSet attrs) {
         super(context, attrs);
-        initStone();
+        initStone(new StoneDrawable());
+    }
+
+    StoneView(Context context, StoneDrawable stoneDrawable) {
+        super(context);
+        initStone(stoneDrawable);
+    }
+
+    private void initStone(StoneDrawable stoneDrawable) {
+        mStoneDrawable = stoneDrawable;
+        mStoneDrawable.setCallback(this);
     }
 
-    private void initStone() {
-        mStonePaint = new Paint();
-        mStonePaint.setAntiAlias(true);
-        mStonePaint.setFilterBitmap(true);
+    /**
+     * 获取棋子绘制对象
+     *
+     * @return
+     */
+    public StoneDrawable getStoneDrawable() {
+        return mStoneDrawable;
     }
 
     /**
@@ -60,10 +55,7 @@ public class StoneView extends TextView {
      * @param stoneTheme
      */
     public void setStoneTheme(GoTheme.StoneTheme stoneTheme) {
-        if (mStoneTheme != stoneTheme) {
-            mStoneTheme = stoneTheme;
-            postInvalidate();
-        }
+        mStoneDrawable.setStoneTheme(stoneTheme);
     }
 
     /**
@@ -72,10 +64,7 @@ public class StoneView extends TextView {
      * @param markTheme
      */
     public void setMarkTheme(GoTheme.MarkTheme markTheme) {
-        if (mMarkTheme != markTheme) {
-            mMarkTheme = markTheme;
-            postInvalidate();
-        }
+        mStoneDrawable.setMarkTheme(markTheme);
     }
 
     /**
@@ -84,10 +73,7 @@ public class StoneView extends TextView {
      * @param drawNumber
      */
     public void setDrawNumber(boolean drawNumber) {
-        if (mIsDrawNumber != drawNumber) {
-            mIsDrawNumber = drawNumber;
-            postInvalidate();
-        }
+        mStoneDrawable.setDrawNumber(drawNumber);
     }
 
     /**
@@ -96,7 +82,7 @@ public class StoneView extends TextView {
      * @return
      */
     public boolean isDrawNumber() {
-        return mIsDrawNumber;
+        return mStoneDrawable.isDrawNumber();
     }
 
     /**
@@ -105,7 +91,7 @@ public class StoneView extends TextView {
      * @param drawNumber
      */
     public void setDrawNumber(int drawNumber) {
-        mDrawNumber = drawNumber;
+        mStoneDrawable.setDrawNumber(drawNumber);
     }
 
     /**
@@ -114,7 +100,7 @@ public class StoneView extends TextView {
      * @return
      */
     public int getDrawNumber() {
-        return mDrawNumber;
+        return mStoneDrawable.getDrawNumber();
     }
 
     /**
@@ -123,10 +109,7 @@ public class StoneView extends TextView {
      * @param highlight
      */
     public void setHighlight(boolean highlight) {
-        if (mIsHighlight != highlight) {
-            mIsHighlight = highlight;
-            postInvalidate();
-        }
+        mStoneDrawable.setHighlight(highlight);
     }
 
     /**
@@ -135,7 +118,7 @@ public class StoneView extends TextView {
      * @return
      */
     public boolean isHighlight() {
-        return mIsHighlight;
+        return mStoneDrawable.isHighlight();
     }
 
     /**
@@ -144,10 +127,7 @@ public class StoneView extends TextView {
      * @param stoneSpace
      */
     public void setStoneSpace(int stoneSpace) {
-        if (mStoneSpace != stoneSpace) {
-            mStoneSpace = stoneSpace;
-            postInvalidate();
-        }
+        mStoneDrawable.setStoneSpace(stoneSpace);
     }
 
     /**
@@ -156,7 +136,7 @@ public class StoneView extends TextView {
      * @return
      */
     public int getStoneSpace() {
-        return mStoneSpace;
+        return mStoneDrawable.getStoneSpace();
     }
 
     /**
@@ -165,7 +145,7 @@ public class StoneView extends TextView {
      * @param stone
      */
     public void setStone(Stone stone) {
-        mStone = stone;
+        mStoneDrawable.setStone(stone);
     }
 
     /**
@@ -174,99 +154,25 @@ public class StoneView extends TextView {
      * @return
      */
     public Stone getStone() {
-        return mStone;
+        return mStoneDrawable.getStone();
     }
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
-
-        // 绘制棋子
-        drawStone(canvas);
-
-        // 绘制手数
-        drawNumber(canvas);
+    protected boolean verifyDrawable(Drawable who) {
+        return who == mStoneDrawable || super.verifyDrawable(who);
     }
 
-    /**
-     * 绘制棋子
-     *
-     * @param canvas
-     */
-    private void drawStone(Canvas canvas) {
-        // 绘制棋子
-        Drawable drawable = mStoneTheme.getRandomTexture();
-        if (drawable instanceof ColorDrawable) {
-            // 纯色棋子
-            mStonePaint.setColor(((ColorDrawable) drawable).getColor());
-            mStonePaint.setStyle(Paint.Style.FILL);
-            canvas.drawCircle(getWidth() / 2, getHeight() / 2, getWidth() / 2 - mStoneSpace / 2, mStonePaint);
-        } else {
-            // 图片棋子等
-            drawable.setBounds(mStoneSpace / 2, mStoneSpace / 2, getWidth() - mStoneSpace / 2, getHeight() - mStoneSpace / 2);
-            drawable.draw(canvas);
-        }
-
-        // 绘制棋子边框
-        if (mStoneTheme.getBorderColor() != INVALID_VALUE) {
-            mStonePaint.setColor(mStoneTheme.getBorderColor());
-            mStonePaint.setStyle(Paint.Style.STROKE);
-            mStonePaint.setStrokeWidth(mStoneTheme.mBorderWidth);
-            canvas.drawCircle(getWidth() / 2, getHeight() / 2, getWidth() / 2 - mStoneSpace / 2, mStonePaint);
-        }
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mStoneDrawable.setBounds(0, 0, w, h);
     }
 
-    /**
-     * 绘制手数
-     *
-     * @param canvas
-     */
-    private void drawNumber(Canvas canvas) {
-        int drawNumber = mDrawNumber > 0 ? mDrawNumber : mStone.number;
-        if (!mIsDrawNumber || drawNumber <= 0) {
-            // 不显示手数时，高亮使用红点标记
-            if (mIsHighlight) {
-                mStonePaint.setColor(mMarkTheme.getHighLightColor());
-                mStonePaint.setStyle(Paint.Style.FILL);
-                canvas.drawCircle(getWidth() / 2, getHeight() / 2, getWidth() / 6, mStonePaint);
-            }
-            return;
-        }
-        float textSize;
-        if (drawNumber < 10) {
-            textSize = getWidth() / 1.5f;
-        } else if (drawNumber < 100) {
-            textSize = getWidth() / 2f;
-        } else {
-            textSize = getWidth() / 2.5f;
-        }
-        mStonePaint.setStyle(Paint.Style.FILL);
-        mStonePaint.setTextSize(textSize);
-        mStonePaint.setStrokeWidth(0);
-        String number = String.valueOf(drawNumber);
-        float width = mStonePaint.measureText(number);
-        Rect bounds = new Rect();
-        mStonePaint.getTextBounds(number, 0, number.length(), bounds);
-        if (mStone.color == StoneColor.BLACK) {
-            mStonePaint.setColor(Color.WHITE);
-            canvas.drawText(number, (getWidth() - width) / 2f, (getHeight() + bounds.height()) / 2f, mStonePaint);
-        } else {
-            mStonePaint.setColor(Color.BLACK);
-            canvas.drawText(number, (getWidth() - width) / 2f, (getHeight() + bounds.height()) / 2f, mStonePaint);
-        }
-        // 显示手数时，高亮使用三角标记
-        if (mIsHighlight) {
-            if (mStone.color == StoneColor.BLACK) {
-                mStonePaint.setColor(Color.RED);
-            } else {
-                mStonePaint.setColor(Color.BLUE);
-            }
-            Path path = new Path();
-            path.moveTo(getWidth() / 24f, getHeight() / 24f);
-            path.lineTo(getWidth() / 3f, getHeight() / 24f);
-            path.lineTo(getWidth() / 24f, getHeight() / 3f);
-            path.close();
-            canvas.drawPath(path, mStonePaint);
-        }
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        // 绘制棋子及手数
+        mStoneDrawable.draw(canvas);
     }
 }
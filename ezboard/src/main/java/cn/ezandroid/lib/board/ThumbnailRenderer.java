@@ -0,0 +1,334 @@
+package cn.ezandroid.lib.board;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import cn.ezandroid.lib.board.theme.GoTheme;
+
+/**
+ * 棋盘缩略图渲染器
+ * <p>
+ * 不创建BoardView，直接在后台线程中将局面绘制到指定尺寸的位图，复用主题编译后的预缩放纹理；
+ * 结果保存在按字节数限制大小的内存LRU缓存中，并以局面哈希、主题及尺寸为键写入磁盘缓存，
+ * 主线程只做内存缓存查找，解码、绘制及文件读写都在后台线程中完成
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class ThumbnailRenderer {
+
+    private static final int THREAD_COUNT = 2;
+
+    public interface OnThumbnailLoadedListener {
+
+        /**
+         * 缩略图加载完成，在主线程中回调
+         *
+         * @param state
+         * @param bitmap 绘制失败时为null
+         */
+        void onThumbnailLoaded(BoardState state, Bitmap bitmap);
+    }
+
+    private final GoTheme mGoTheme;
+    private final String mThemeKey;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    private final File mDiskCacheDir;
+    private final long mDiskCacheSize;
+    private long mDiskUsage = -1; // 磁盘缓存已用空间，-1表示尚未统计，只在mDiskCacheDir锁内访问
+    // 最近一次使用的预缩放纹理，不可变对象整体替换，多个绘制线程无锁读取
+    private volatile GoTheme.ScaledTextures mBlackTextures;
+    private volatile GoTheme.ScaledTextures mWhiteTextures;
+
+    private final ExecutorService mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, List<OnThumbnailLoadedListener>> mPendingRequests = new HashMap<>(); // 只在主线程访问
+
+    /**
+     * 创建缩略图渲染器
+     *
+     * @param goTheme         主题
+     * @param themeId         主题标识，作为缓存键及缓存文件名的一部分，配置不同的主题必须使用不同的标识，只能包含字母、数字、'-'及'_'
+     * @param memoryCacheSize 内存缓存字节数
+     * @param diskCacheDir    磁盘缓存目录，为null时不使用磁盘缓存
+     * @param diskCacheSize   磁盘缓存字节数
+     */
+    public ThumbnailRenderer(GoTheme goTheme, String themeId, int memoryCacheSize, File diskCacheDir, long diskCacheSize) {
+        if (themeId == null || !themeId.matches("[A-Za-z0-9_-]+")) {
+            throw new IllegalArgumentException("Invalid theme id: " + themeId);
+        }
+        mGoTheme = goTheme;
+        mThemeKey = themeId;
+        mMemoryCache = new LruCache<String, Bitmap>(memoryCacheSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+        mDiskCacheDir = diskCacheDir;
+        mDiskCacheSize = diskCacheSize;
+        mExecutor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+            private int mCount;
+
+            @Override
+            public synchronized Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "ThumbnailRenderer-" + mCount++);
+            }
+        });
+    }
+
+    /**
+     * 获取内存缓存中的缩略图
+     *
+     * @param state
+     * @param size
+     * @return 未缓存时返回null
+     */
+    public Bitmap getCachedThumbnail(BoardState state, int size) {
+        return mMemoryCache.get(getCacheKey(state, size));
+    }
+
+    /**
+     * 加载缩略图，必须在主线程中调用
+     * <p>
+     * 内存缓存命中时直接回调，否则在后台线程中读取磁盘缓存或重新绘制后回调；同一缩略图的并发请求只处理一次
+     *
+     * @param state
+     * @param size     缩略图边长
+     * @param listener
+     */
+    public void loadThumbnail(final BoardState state, final int size, OnThumbnailLoadedListener listener) {
+        final String key = getCacheKey(state, size);
+        Bitmap cached = mMemoryCache.get(key);
+        if (cached != null) {
+            listener.onThumbnailLoaded(state, cached);
+            return;
+        }
+        List<OnThumbnailLoadedListener> listeners = mPendingRequests.get(key);
+        if (listeners != null) {
+            listeners.add(listener);
+            return;
+        }
+        listeners = new ArrayList<>(1);
+        listeners.add(listener);
+        mPendingRequests.put(key, listeners);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = loadInBackground(key, state, size);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (bitmap != null) {
+                            mMemoryCache.put(key, bitmap);
+                        }
+                        List<OnThumbnailLoadedListener> listeners = mPendingRequests.remove(key);
+                        if (listeners != null) {
+                            for (OnThumbnailLoadedListener listener : listeners) {
+                                listener.onThumbnailLoaded(state, bitmap);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 同步绘制缩略图，不读写缓存，可以在任意线程中调用
+     *
+     * @param state
+     * @param size
+     * @return 内存不足时返回null
+     */
+    public Bitmap render(BoardState state, int size) {
+        Bitmap bitmap;
+        try {
+            bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            e.printStackTrace();
+            return null;
+        }
+        Canvas canvas = new Canvas(bitmap);
+        // 使用主题缓存的编译结果，棋盘与棋子读取同一次编译的结果
+        GoTheme.RenderSpec spec = mGoTheme.getRenderSpec();
+        int boardSize = state.getBoardSize();
+        int squareSize = size / (boardSize + 1);
+
+        BoardRenderer boardRenderer = new BoardRenderer();
+        boardRenderer.setSize(boardSize, squareSize);
+        boardRenderer.drawStaticBoard(canvas, spec.mBoardSpec, size, size, false);
+
+        StoneDrawable blackDrawable = createStoneDrawable(mGoTheme.mBlackStoneTheme, spec.mBlackStoneSpec, spec);
+        StoneDrawable whiteDrawable = createStoneDrawable(mGoTheme.mWhiteStoneTheme, spec.mWhiteStoneSpec, spec);
+        int textureSize = StoneDrawable.getTextureSize(squareSize, 0);
+        GoTheme.ScaledTextures blackTextures = mBlackTextures;
+        if (blackTextures == null || !blackTextures.matches(spec.mBlackStoneSpec, textureSize)) {
+            blackTextures = spec.mBlackStoneSpec.createScaledTextures(textureSize);
+            mBlackTextures = blackTextures;
+        }
+        GoTheme.ScaledTextures whiteTextures = mWhiteTextures;
+        if (whiteTextures == null || !whiteTextures.matches(spec.mWhiteStoneSpec, textureSize)) {
+            whiteTextures = spec.mWhiteStoneSpec.createScaledTextures(textureSize);
+            mWhiteTextures = whiteTextures;
+        }
+        blackDrawable.setScaledTextures(blackTextures);
+        whiteDrawable.setScaledTextures(whiteTextures);
+        for (int y = 0; y < boardSize; y++) {
+            for (int x = 0; x < boardSize; x++) {
+                StoneColor color = state.getColor(x, y);
+                if (color == null) {
+                    continue;
+                }
+                Stone stone = new Stone();
+                stone.color = color;
+                stone.intersection = Intersection.valueOf(x, y);
+                StoneDrawable drawable = color == StoneColor.BLACK ? blackDrawable : whiteDrawable;
+                drawable.setStone(stone);
+                int left = Math.round((x + 0.5f) * squareSize);
+                int top = Math.round((y + 0.5f) * squareSize);
+                drawable.setBounds(left, top, left + squareSize, top + squareSize);
+                drawable.draw(canvas);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * 清空内存缓存
+     */
+    public void clearMemoryCache() {
+        mMemoryCache.evictAll();
+    }
+
+    /**
+     * 停止后台线程，已提交但未开始的任务会被丢弃
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+        mPendingRequests.clear();
+    }
+
+    private StoneDrawable createStoneDrawable(GoTheme.StoneTheme stoneTheme, GoTheme.StoneSpec stoneSpec,
+                                              GoTheme.RenderSpec spec) {
+        StoneDrawable drawable = new StoneDrawable();
+        drawable.setStoneTheme(stoneTheme, stoneSpec);
+        drawable.setMarkTheme(mGoTheme.mMarkTheme, spec.mMarkSpec);
+        drawable.setDrawNumber(false);
+        drawable.setStoneSpace(0);
+        return drawable;
+    }
+
+    private String getCacheKey(BoardState state, int size) {
+        return Long.toHexString(state.getZobristHash()) + '_' + state.getBoardSize() + '_' + mThemeKey + '_' + size;
+    }
+
+    private Bitmap loadInBackground(String key, BoardState state, int size) {
+        File file = mDiskCacheDir != null ? new File(mDiskCacheDir, key + ".png") : null;
+        if (file != null && file.exists()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+            if (bitmap != null) {
+                // 更新访问时间，用于磁盘缓存的LRU淘汰
+                file.setLastModified(System.currentTimeMillis());
+                return bitmap;
+            }
+        }
+        Bitmap bitmap = render(state, size);
+        if (bitmap != null && file != null) {
+            writeDiskCache(file, bitmap);
+        }
+        return bitmap;
+    }
+
+    private void writeDiskCache(File file, Bitmap bitmap) {
+        synchronized (mDiskCacheDir) {
+            if (!mDiskCacheDir.exists() && !mDiskCacheDir.mkdirs()) {
+                return;
+            }
+            if (mDiskUsage < 0) {
+                mDiskUsage = 0;
+                File[] files = mDiskCacheDir.listFiles();
+                if (files != null) {
+                    for (File f : files) {
+                        mDiskUsage += f.length();
+                    }
+                }
+            }
+            File temp = new File(mDiskCacheDir, file.getName() + ".tmp");
+            OutputStream out = null;
+            try {
+                out = new FileOutputStream(temp);
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            // 写入完成后再重命名，避免读到不完整的文件
+            if (temp.renameTo(file)) {
+                mDiskUsage += file.length();
+                trimDiskCache();
+            } else {
+                temp.delete();
+            }
+        }
+    }
+
+    private void trimDiskCache() {
+        if (mDiskUsage <= mDiskCacheSize) {
+            return;
+        }
+        File[] files = mDiskCacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File f : files) {
+            if (mDiskUsage <= mDiskCacheSize * 3 / 4) {
+                break;
+            }
+            long length = f.length();
+            if (f.delete()) {
+                mDiskUsage -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cn.ezandroid.lib.board;
+
+/**
+ * Zobrist哈希键表
+ * <p>
+ * 每个交叉点的黑白两种棋子各对应一个固定的64位随机键，局面哈希为所有棋子键的异或，落子和提子时可以增量更新；
+ * 键表使用固定种子生成，不同进程、不同设备上同一局面的哈希值相同，可以作为持久化的缓存键
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public final class Zobrist {
+
+    /**
+     * 键表覆盖的最大棋盘大小
+     */
+    public static final int MAX_BOARD_SIZE = Intersection.MAX_POOL_SIZE;
+
+    /**
+     * 轮到白方落子时异或的键，用于区分同形但行棋方不同的局面
+     */
+    public static final long WHITE_TO_PLAY;
+
+    private static final long[] BLACK_KEYS = new long[MAX_BOARD_SIZE * MAX_BOARD_SIZE];
+    private static final long[] WHITE_KEYS = new long[MAX_BOARD_SIZE * MAX_BOARD_SIZE];
+
+    static {
+        long seed = 0x5A6F62726973744CL;
+        for (int i = 0; i < BLACK_KEYS.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            BLACK_KEYS[i] = mix(seed);
+            seed += 0x9E3779B97F4A7C15L;
+            WHITE_KEYS[i] = mix(seed);
+        }
+        seed += 0x9E3779B97F4A7C15L;
+        WHITE_TO_PLAY = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    private static long mix(long z) {
+        // SplitMix64
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 检查棋盘大小是否在键表覆盖的范围内，超出范围的交叉点会与其他交叉点共用哈希键
+     *
+     * @param boardSize
+     * @throws IllegalArgumentException 棋盘大小小于1或大于MAX_BOARD_SIZE
+     */
+    public static void checkBoardSize(int boardSize) {
+        if (boardSize < 1 || boardSize > MAX_BOARD_SIZE) {
+            throw new IllegalArgumentException("Board size " + boardSize + " out of range [1, " + MAX_BOARD_SIZE + "]");
+        }
+    }
+
+    /**
+     * 获取指定交叉点上棋子的哈希键
+     *
+     * @param x
+     * @param y
+     * @param color
+     * @return
+     */
+    public static long getKey(int x, int y, StoneColor color) {
+        int index = x + y * MAX_BOARD_SIZE;
+        return color == StoneColor.BLACK ? BLACK_KEYS[index] : WHITE_KEYS[index];
+    }
+}
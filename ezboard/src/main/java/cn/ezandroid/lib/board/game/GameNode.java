@@ -0,0 +1,213 @@
+package cn.ezandroid.lib.board.game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import cn.ezandroid.lib.board.BoardState;
+import cn.ezandroid.lib.board.Move;
+
+/**
+ * 棋谱树节点
+ * <p>
+ * 节点只记录自身的着手及父节点，所有分支共享公共的祖先节点；每个节点额外保存一个跳跃指针，
+ * 按斜二进制方式指向更远的祖先，使按深度查找祖先及求公共祖先都只需O(log n)时间
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public final class GameNode {
+
+    private final GameNode mParent;
+    private final GameNode mJump; // 跳跃指针
+    private final Move mMove; // 根节点为null
+    private final int mDepth;
+    private final BoardState mKeyframe; // 关键帧局面，非关键帧节点为null
+
+    private List<GameNode> mChildren;
+    private String mComment;
+
+    GameNode(GameNode parent, Move move, BoardState keyframe) {
+        mParent = parent;
+        mMove = move;
+        mKeyframe = keyframe;
+        if (parent == null) {
+            mDepth = 0;
+            mJump = this;
+        } else {
+            mDepth = parent.mDepth + 1;
+            GameNode jump = parent.mJump;
+            if (parent.mDepth - jump.mDepth == jump.mDepth - jump.mJump.mDepth) {
+                mJump = jump.mJump;
+            } else {
+                mJump = parent;
+            }
+        }
+    }
+
+    /**
+     * 获取父节点
+     *
+     * @return 根节点返回null
+     */
+    public GameNode getParent() {
+        return mParent;
+    }
+
+    /**
+     * 获取着手
+     *
+     * @return 根节点返回null
+     */
+    public Move getMove() {
+        return mMove;
+    }
+
+    /**
+     * 获取节点深度，根节点为0，即该节点着手的手数
+     *
+     * @return
+     */
+    public int getDepth() {
+        return mDepth;
+    }
+
+    /**
+     * 是否为根节点
+     *
+     * @return
+     */
+    public boolean isRoot() {
+        return mParent == null;
+    }
+
+    /**
+     * 获取子节点，第一个子节点为主分支
+     *
+     * @return
+     */
+    public List<GameNode> getChildren() {
+        return mChildren == null ? Collections.<GameNode>emptyList() : Collections.unmodifiableList(mChildren);
+    }
+
+    /**
+     * 获取子节点数
+     *
+     * @return
+     */
+    public int getChildCount() {
+        return mChildren == null ? 0 : mChildren.size();
+    }
+
+    /**
+     * 获取第index个子节点
+     *
+     * @param index
+     * @return
+     */
+    public GameNode getChild(int index) {
+        return mChildren.get(index);
+    }
+
+    /**
+     * 获取着手相同的子节点
+     *
+     * @param move
+     * @return 不存在时返回null
+     */
+    public GameNode findChild(Move move) {
+        if (mChildren != null) {
+            for (int i = 0; i < mChildren.size(); i++) {
+                GameNode child = mChildren.get(i);
+                if (child.mMove.equals(move)) {
+                    return child;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取注释
+     *
+     * @return
+     */
+    public String getComment() {
+        return mComment;
+    }
+
+    /**
+     * 设置注释
+     *
+     * @param comment
+     */
+    public void setComment(String comment) {
+        mComment = comment;
+    }
+
+    /**
+     * 获取指定深度的祖先节点
+     *
+     * @param depth
+     * @return depth超出范围时返回null
+     */
+    public GameNode getAncestor(int depth) {
+        if (depth < 0 || depth > mDepth) {
+            return null;
+        }
+        GameNode node = this;
+        while (node.mDepth > depth) {
+            node = node.mJump.mDepth >= depth ? node.mJump : node.mParent;
+        }
+        return node;
+    }
+
+    /**
+     * 获取与另一节点的最近公共祖先
+     *
+     * @param other
+     * @return 两个节点不在同一棵树中时返回null
+     */
+    public GameNode getCommonAncestor(GameNode other) {
+        GameNode a = this;
+        GameNode b = other;
+        if (a.mDepth > b.mDepth) {
+            a = a.getAncestor(b.mDepth);
+        } else if (b.mDepth > a.mDepth) {
+            b = b.getAncestor(a.mDepth);
+        }
+        while (a != b) {
+            if (a.mParent == null) {
+                return null;
+            }
+            // 同一深度节点的跳跃指针深度相同
+            if (a.mJump != b.mJump) {
+                a = a.mJump;
+                b = b.mJump;
+            } else {
+                a = a.mParent;
+                b = b.mParent;
+            }
+        }
+        return a;
+    }
+
+    BoardState getKeyframe() {
+        return mKeyframe;
+    }
+
+    void addChild(GameNode child) {
+        if (mChildren == null) {
+            mChildren = new ArrayList<>(1);
+        }
+        mChildren.add(child);
+    }
+
+    @Override
+    public String toString() {
+        return "GameNode{" +
+                "depth=" + mDepth +
+                ", move=" + mMove +
+                '}';
+    }
+}
@@ -0,0 +1,193 @@
+package cn.ezandroid.lib.board.game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import cn.ezandroid.lib.board.BoardState;
+import cn.ezandroid.lib.board.Move;
+import cn.ezandroid.lib.board.StoneColor;
+import cn.ezandroid.lib.board.rule.RuleBoard;
+
+/**
+ * 棋谱树
+ * <p>
+ * 变化分支共享公共的祖先节点，每隔固定手数的节点保存一个关键帧局面；
+ * 恢复任意节点的局面时，先通过跳跃指针找到最近的关键帧祖先，再最多重放keyframeInterval - 1手，
+ * 内存占用为节点数加上每keyframeInterval个节点一个BoardState
+ * <p>
+ * 不是线程安全的
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class GameTree {
+
+    /**
+     * 默认关键帧间隔
+     */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 16;
+
+    private final int mBoardSize;
+    private final int mKeyframeInterval;
+    private final GameNode mRoot;
+    private final RuleBoard mRuleBoard; // 重放用的规则棋盘
+
+    private int mNodeCount = 1;
+
+    public GameTree(int boardSize) {
+        this(BoardState.empty(boardSize), DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * 创建棋谱树
+     *
+     * @param initialState     初始局面，如让子棋的摆子
+     * @param keyframeInterval 关键帧间隔
+     */
+    public GameTree(BoardState initialState, int keyframeInterval) {
+        mBoardSize = initialState.getBoardSize();
+        mKeyframeInterval = Math.max(1, keyframeInterval);
+        mRoot = new GameNode(null, null, initialState);
+        mRuleBoard = new RuleBoard(mBoardSize);
+    }
+
+    /**
+     * 获取棋盘大小
+     *
+     * @return
+     */
+    public int getBoardSize() {
+        return mBoardSize;
+    }
+
+    /**
+     * 获取关键帧间隔
+     *
+     * @return
+     */
+    public int getKeyframeInterval() {
+        return mKeyframeInterval;
+    }
+
+    /**
+     * 获取根节点
+     *
+     * @return
+     */
+    public GameNode getRoot() {
+        return mRoot;
+    }
+
+    /**
+     * 获取节点总数
+     *
+     * @return
+     */
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    /**
+     * 在指定节点后添加着手
+     * <p>
+     * 已存在相同着手的子节点时直接返回该节点，否则新建子节点作为新的变化分支
+     *
+     * @param parent
+     * @param move
+     * @return
+     */
+    public GameNode addMove(GameNode parent, Move move) {
+        GameNode child = parent.findChild(move);
+        if (child != null) {
+            return child;
+        }
+        BoardState keyframe = null;
+        if ((parent.getDepth() + 1) % mKeyframeInterval == 0) {
+            restore(parent);
+            mRuleBoard.play(move);
+            keyframe = mRuleBoard.toBoardState();
+        }
+        child = new GameNode(parent, move, keyframe);
+        parent.addChild(child);
+        mNodeCount++;
+        return child;
+    }
+
+    /**
+     * 获取主分支上指定手数的节点
+     *
+     * @param depth
+     * @return 主分支长度不足时返回最后一个节点
+     */
+    public GameNode getMainLineNode(int depth) {
+        GameNode node = mRoot;
+        while (node.getDepth() < depth && node.getChildCount() > 0) {
+            node = node.getChild(0);
+        }
+        return node;
+    }
+
+    /**
+     * 获取从根节点到指定节点的着手序列
+     *
+     * @param node
+     * @return
+     */
+    public List<Move> getMoves(GameNode node) {
+        List<Move> moves = new ArrayList<>(node.getDepth());
+        while (!node.isRoot()) {
+            moves.add(node.getMove());
+            node = node.getParent();
+        }
+        Collections.reverse(moves);
+        return moves;
+    }
+
+    /**
+     * 恢复指定节点的局面
+     *
+     * @param node
+     * @return
+     */
+    public BoardState getBoardState(GameNode node) {
+        if (node.getKeyframe() != null) {
+            return node.getKeyframe();
+        }
+        restore(node);
+        return mRuleBoard.toBoardState();
+    }
+
+    /**
+     * 将传入的规则棋盘恢复为指定节点的局面，可以用于在该节点后继续对弈或在其他线程中分析
+     * <p>
+     * 重放时非法的着手会被忽略
+     *
+     * @param node
+     * @param ruleBoard 棋盘大小需与棋谱一致
+     */
+    public void restore(GameNode node, RuleBoard ruleBoard) {
+        // 关键帧祖先的深度
+        int keyframeDepth = node.getDepth() - node.getDepth() % mKeyframeInterval;
+        GameNode keyframeNode = node.getAncestor(keyframeDepth);
+        if (keyframeNode.getKeyframe() == null) {
+            keyframeNode = mRoot;
+        }
+        Move[] moves = new Move[node.getDepth() - keyframeNode.getDepth()];
+        GameNode current = node;
+        for (int i = moves.length - 1; i >= 0; i--) {
+            moves[i] = current.getMove();
+            current = current.getParent();
+        }
+        Move keyMove = keyframeNode.getMove();
+        ruleBoard.setPosition(keyframeNode.getKeyframe(),
+                keyMove == null || keyMove.getColor() == StoneColor.WHITE ? StoneColor.BLACK : StoneColor.WHITE);
+        for (Move move : moves) {
+            ruleBoard.play(move);
+        }
+    }
+
+    private void restore(GameNode node) {
+        restore(node, mRuleBoard);
+    }
+}
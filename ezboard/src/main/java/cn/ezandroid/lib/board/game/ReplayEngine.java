@@ -0,0 +1,235 @@
+package cn.ezandroid.lib.board.game;
+
+import java.util.List;
+
+import cn.ezandroid.lib.board.BoardState;
+import cn.ezandroid.lib.board.BoardView;
+import cn.ezandroid.lib.board.Intersection;
+import cn.ezandroid.lib.board.Move;
+import cn.ezandroid.lib.board.Stone;
+import cn.ezandroid.lib.board.StoneColor;
+import cn.ezandroid.lib.board.rule.RuleBoard;
+
+/**
+ * 棋谱回放引擎
+ * <p>
+ * 创建时按规则完整走一遍棋谱，记录每手的落子点及提子，并每隔固定手数保存一个关键帧(各交叉点的颜色及手数)；
+ * 跳转到任意手时从最近的关键帧最多应用keyframeInterval - 1手的增量得到目标局面，
+ * 再与BoardView当前显示的内容逐点比较，只对有差异的交叉点批量增删棋子
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class ReplayEngine {
+
+    private final int mBoardSize;
+    private final int mKeyframeInterval;
+    private final Move[] mMoves;
+
+    // 每手的增量：落子点(-1表示停一手或非法着手)及被提棋子在mCaptured中的范围
+    private final int[] mPlaced;
+    private final int[] mCaptureStart;
+    private int[] mCaptured;
+
+    // 关键帧，第i个关键帧为第i * keyframeInterval手之后的局面
+    private final byte[][] mKeyframeColors;
+    private final int[][] mKeyframeNumbers;
+
+    // 跳转时复用的目标局面
+    private final byte[] mColors;
+    private final int[] mNumbers;
+
+    private int mCurrentMove;
+
+    /**
+     * 根据棋谱树中从根节点到指定节点的着手创建回放引擎
+     *
+     * @param tree
+     * @param node
+     */
+    public ReplayEngine(GameTree tree, GameNode node) {
+        this(tree.getBoardState(tree.getRoot()), tree.getMoves(node), tree.getKeyframeInterval());
+    }
+
+    /**
+     * 创建回放引擎
+     *
+     * @param initialState     初始局面，其中的棋子手数为0
+     * @param moves            着手序列
+     * @param keyframeInterval 关键帧间隔
+     */
+    public ReplayEngine(BoardState initialState, List<Move> moves, int keyframeInterval) {
+        mBoardSize = initialState.getBoardSize();
+        mKeyframeInterval = Math.max(1, keyframeInterval);
+        mMoves = moves.toArray(new Move[moves.size()]);
+        int count = mBoardSize * mBoardSize;
+        mColors = new byte[count];
+        mNumbers = new int[count];
+        mPlaced = new int[mMoves.length];
+        mCaptureStart = new int[mMoves.length + 1];
+        mCaptured = new int[16];
+        mKeyframeColors = new byte[mMoves.length / mKeyframeInterval + 1][];
+        mKeyframeNumbers = new int[mKeyframeColors.length][];
+
+        RuleBoard ruleBoard = new RuleBoard(mBoardSize);
+        ruleBoard.setPosition(initialState, StoneColor.BLACK);
+        for (int y = 0; y < mBoardSize; y++) {
+            for (int x = 0; x < mBoardSize; x++) {
+                mColors[x + y * mBoardSize] = ruleBoard.getColor(x, y);
+            }
+        }
+        int captureCount = 0;
+        for (int i = 0; i < mMoves.length; i++) {
+            if (i % mKeyframeInterval == 0) {
+                mKeyframeColors[i / mKeyframeInterval] = mColors.clone();
+                mKeyframeNumbers[i / mKeyframeInterval] = mNumbers.clone();
+            }
+            Move move = mMoves[i];
+            int captured = ruleBoard.play(move);
+            if (move.isPass() || captured == RuleBoard.ILLEGAL) {
+                mPlaced[i] = -1;
+            } else {
+                mPlaced[i] = move.getX() + move.getY() * mBoardSize;
+                if (captureCount + captured > mCaptured.length) {
+                    int[] array = new int[Math.max(mCaptured.length * 2, captureCount + captured)];
+                    System.arraycopy(mCaptured, 0, array, 0, captureCount);
+                    mCaptured = array;
+                }
+                for (int k = 0; k < captured; k++) {
+                    mCaptured[captureCount++] = ruleBoard.getCapturedIndex(k);
+                }
+            }
+            mCaptureStart[i + 1] = captureCount;
+            applyDelta(i);
+        }
+        if (mMoves.length % mKeyframeInterval == 0) {
+            mKeyframeColors[mMoves.length / mKeyframeInterval] = mColors.clone();
+            mKeyframeNumbers[mMoves.length / mKeyframeInterval] = mNumbers.clone();
+        }
+        mCurrentMove = -1;
+    }
+
+    /**
+     * 获取总手数
+     *
+     * @return
+     */
+    public int getMoveCount() {
+        return mMoves.length;
+    }
+
+    /**
+     * 获取最近一次跳转到的手数
+     *
+     * @return 还未跳转时返回-1
+     */
+    public int getCurrentMove() {
+        return mCurrentMove;
+    }
+
+    /**
+     * 获取第number手的着手，手数从1开始
+     *
+     * @param number
+     * @return
+     */
+    public Move getMove(int number) {
+        return mMoves[number - 1];
+    }
+
+    /**
+     * 获取第number手的提子数
+     *
+     * @param number
+     * @return
+     */
+    public int getCapturedCount(int number) {
+        return mCaptureStart[number] - mCaptureStart[number - 1];
+    }
+
+    /**
+     * 获取第number手之后的局面
+     *
+     * @param number 0表示初始局面
+     * @return
+     */
+    public BoardState getBoardState(int number) {
+        restore(number);
+        return BoardState.valueOf(mBoardSize, mColors, RuleBoard.BLACK, RuleBoard.WHITE);
+    }
+
+    /**
+     * 跳转到第number手之后的局面，只对与当前显示内容不同的交叉点批量增删棋子，并高亮最后一手
+     *
+     * @param number 0表示初始局面
+     * @param boardView
+     */
+    public void seek(int number, BoardView boardView) {
+        number = Math.max(0, Math.min(number, mMoves.length));
+        restore(number);
+        if (boardView.getBoardSize() != mBoardSize) {
+            boardView.setBoardSize(mBoardSize);
+        }
+
+        Stone lastStone = null;
+        boardView.beginUpdate();
+        for (int y = 0; y < mBoardSize; y++) {
+            for (int x = 0; x < mBoardSize; x++) {
+                int index = x + y * mBoardSize;
+                StoneColor color = toStoneColor(mColors[index]);
+                StoneColor shownColor = boardView.getStoneColor(x, y);
+                if (color == shownColor && (color == null || mNumbers[index] == boardView.getStoneNumber(x, y))) {
+                    continue;
+                }
+                if (color == null) {
+                    boardView.removeStone(Intersection.valueOf(x, y));
+                } else {
+                    Stone stone = new Stone();
+                    stone.color = color;
+                    stone.intersection = Intersection.valueOf(x, y);
+                    stone.number = mNumbers[index];
+                    boardView.addStone(stone);
+                }
+            }
+        }
+        if (number > 0 && mPlaced[number - 1] >= 0) {
+            int index = mPlaced[number - 1];
+            lastStone = boardView.getStone(index % mBoardSize, index / mBoardSize);
+        }
+        boardView.setHighlightStone(lastStone);
+        boardView.endUpdate();
+        mCurrentMove = number;
+    }
+
+    private void restore(int number) {
+        int keyframe = number / mKeyframeInterval;
+        System.arraycopy(mKeyframeColors[keyframe], 0, mColors, 0, mColors.length);
+        System.arraycopy(mKeyframeNumbers[keyframe], 0, mNumbers, 0, mNumbers.length);
+        for (int i = keyframe * mKeyframeInterval; i < number; i++) {
+            applyDelta(i);
+        }
+    }
+
+    private void applyDelta(int i) {
+        int placed = mPlaced[i];
+        if (placed >= 0) {
+            mColors[placed] = mMoves[i].getColor() == StoneColor.BLACK ? RuleBoard.BLACK : RuleBoard.WHITE;
+            mNumbers[placed] = i + 1;
+        }
+        for (int k = mCaptureStart[i]; k < mCaptureStart[i + 1]; k++) {
+            mColors[mCaptured[k]] = RuleBoard.EMPTY;
+            mNumbers[mCaptured[k]] = 0;
+        }
+    }
+
+    private static StoneColor toStoneColor(byte color) {
+        switch (color) {
+            case RuleBoard.BLACK:
+                return StoneColor.BLACK;
+            case RuleBoard.WHITE:
+                return StoneColor.WHITE;
+            default:
+                return null;
+        }
+    }
+}
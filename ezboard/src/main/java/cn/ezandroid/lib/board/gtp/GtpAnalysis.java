@@ -0,0 +1,230 @@
+package cn.ezandroid.lib.board.gtp;
+
+import java.util.Arrays;
+
+/**
+ * 一行lz-analyze或kata-analyze分析输出的解析结果
+ * <p>
+ * 数组按交叉点索引(x + y * boardSize)存储，胜率及计算量可以直接传给BoardView.setAnalysisData；
+ * 同一个对象在每行输出之间复用，解析过程不产生对象，回调之外需要保留时应自行复制
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class GtpAnalysis {
+
+    /**
+     * lz-analyze输出格式，胜率为0到10000的整数
+     */
+    public static final int FORMAT_LEELA_ZERO = 0;
+
+    /**
+     * kata-analyze输出格式，胜率为0到1的小数
+     */
+    public static final int FORMAT_KATAGO = 1;
+
+    public final int boardSize;
+    public final int format; // 输出格式，决定胜率的单位
+    public final float[] winRates; // 候选点胜率，0到1
+    public final int[] visits; // 候选点计算量，0表示不是候选点
+    public final float[] ownership; // 归属，-1到1，正数表示轮走方，hasOwnership为false时无效
+    public boolean hasOwnership;
+    public int candidateCount; // 候选点数
+    public int bestMove = GtpVertex.INVALID; // order为0的候选点，可能为GtpVertex.PASS
+
+    private int mCurrentMove; // 解析中的候选点
+
+    public GtpAnalysis(int boardSize) {
+        this(boardSize, FORMAT_LEELA_ZERO);
+    }
+
+    /**
+     * 创建分析结果
+     *
+     * @param boardSize
+     * @param format    FORMAT_LEELA_ZERO或FORMAT_KATAGO，由发送的分析命令决定
+     */
+    public GtpAnalysis(int boardSize, int format) {
+        this.boardSize = boardSize;
+        this.format = format;
+        winRates = new float[boardSize * boardSize];
+        visits = new int[boardSize * boardSize];
+        ownership = new float[boardSize * boardSize];
+    }
+
+    /**
+     * 解析一行分析输出，如"info move D4 visits 12 winrate 5123 ... pv D4 Q16 info move ..."
+     * <p>
+     * lz-analyze的胜率为0到10000的整数，kata-analyze的胜率为0到1的小数，按format换算后都以0到1保存；
+     * kata-analyze输出的ownership为轮走方视角，原样保存，显示前需要按轮走方转换为黑方视角，见GtpBoardBridge
+     *
+     * @param line
+     * @param length
+     * @return 是否为分析输出
+     */
+    public boolean parse(char[] line, int length) {
+        int start = skipSpaces(line, 0, length);
+        int end = tokenEnd(line, start, length);
+        if (!matches(line, start, end, "info")) {
+            return false;
+        }
+        Arrays.fill(visits, 0);
+        Arrays.fill(winRates, 0);
+        hasOwnership = false;
+        candidateCount = 0;
+        bestMove = GtpVertex.INVALID;
+        mCurrentMove = GtpVertex.INVALID;
+
+        int position = end;
+        while (true) {
+            start = skipSpaces(line, position, length);
+            if (start >= length) {
+                break;
+            }
+            end = tokenEnd(line, start, length);
+            if (matches(line, start, end, "move")) {
+                position = readMove(line, end, length);
+            } else if (matches(line, start, end, "visits")) {
+                position = readValue(line, end, length, 0);
+            } else if (matches(line, start, end, "winrate")) {
+                position = readValue(line, end, length, 1);
+            } else if (matches(line, start, end, "order")) {
+                position = readValue(line, end, length, 2);
+            } else if (matches(line, start, end, "pv")) {
+                // 变化图到下一个info或ownership为止，直接跳过
+                position = end;
+                while (true) {
+                    int s = skipSpaces(line, position, length);
+                    int e = tokenEnd(line, s, length);
+                    if (s >= length || matches(line, s, e, "info") || matches(line, s, e, "ownership")) {
+                        break;
+                    }
+                    position = e;
+                }
+            } else if (matches(line, start, end, "ownership")) {
+                position = readOwnership(line, end, length);
+            } else {
+                position = end;
+            }
+        }
+        return true;
+    }
+
+    private int readMove(char[] line, int position, int length) {
+        int start = skipSpaces(line, position, length);
+        int end = tokenEnd(line, start, length);
+        mCurrentMove = GtpVertex.parse(line, start, end, boardSize);
+        if (mCurrentMove >= 0 || mCurrentMove == GtpVertex.PASS) {
+            candidateCount++;
+        }
+        return end;
+    }
+
+    private int readValue(char[] line, int position, int length, int type) {
+        int start = skipSpaces(line, position, length);
+        int end = tokenEnd(line, start, length);
+        float value = parseFloat(line, start, end);
+        switch (type) {
+            case 0:
+                if (mCurrentMove >= 0) {
+                    visits[mCurrentMove] = (int) value;
+                }
+                break;
+            case 1:
+                if (mCurrentMove >= 0) {
+                    winRates[mCurrentMove] = format == FORMAT_KATAGO ? value : value / 10000f;
+                }
+                break;
+            case 2:
+                if (value == 0) {
+                    bestMove = mCurrentMove;
+                }
+                break;
+        }
+        return end;
+    }
+
+    private int readOwnership(char[] line, int position, int length) {
+        int count = 0;
+        while (count < ownership.length) {
+            int start = skipSpaces(line, position, length);
+            if (start >= length) {
+                break;
+            }
+            int end = tokenEnd(line, start, length);
+            ownership[count++] = parseFloat(line, start, end);
+            position = end;
+        }
+        hasOwnership = count == ownership.length;
+        return position;
+    }
+
+    private static int skipSpaces(char[] line, int position, int length) {
+        while (position < length && line[position] <= ' ') {
+            position++;
+        }
+        return position;
+    }
+
+    private static int tokenEnd(char[] line, int position, int length) {
+        while (position < length && line[position] > ' ') {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean matches(char[] line, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (line[start + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析十进制小数，支持符号及指数，如"-0.25"、"1e-05"
+     *
+     * @param line
+     * @param start
+     * @param end
+     * @return 无法解析时返回0
+     */
+    static float parseFloat(char[] line, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line[i] == '-' || line[i] == '+')) {
+            negative = line[i] == '-';
+            i++;
+        }
+        double value = 0;
+        while (i < end && line[i] >= '0' && line[i] <= '9') {
+            value = value * 10 + (line[i++] - '0');
+        }
+        if (i < end && line[i] == '.') {
+            i++;
+            double scale = 0.1;
+            while (i < end && line[i] >= '0' && line[i] <= '9') {
+                value += (line[i++] - '0') * scale;
+                scale /= 10;
+            }
+        }
+        if (i < end && (line[i] == 'e' || line[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (line[i] == '-' || line[i] == '+')) {
+                negativeExponent = line[i] == '-';
+                i++;
+            }
+            int exponent = 0;
+            while (i < end && line[i] >= '0' && line[i] <= '9') {
+                exponent = exponent * 10 + (line[i++] - '0');
+            }
+            value *= Math.pow(10, negativeExponent ? -exponent : exponent);
+        }
+        return (float) (negative ? -value : value);
+    }
+}
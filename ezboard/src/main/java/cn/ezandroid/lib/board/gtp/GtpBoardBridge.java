@@ -0,0 +1,278 @@
+package cn.ezandroid.lib.board.gtp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+import java.util.List;
+
+import cn.ezandroid.lib.board.BoardUpdateScheduler;
+import cn.ezandroid.lib.board.BoardView;
+import cn.ezandroid.lib.board.Intersection;
+import cn.ezandroid.lib.board.Stone;
+import cn.ezandroid.lib.board.StoneColor;
+import cn.ezandroid.lib.board.rule.RuleBoard;
+
+/**
+ * GTP引擎与BoardView的桥接
+ * <p>
+ * 落子在主线程中按规则计算提子后，以一次批量修改显示到BoardView；
+ * 分析输出经BoardUpdateScheduler合并，每帧最多应用一次到分析叠加层
+ * <p>
+ * 除回调外的方法都必须在主线程中调用
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class GtpBoardBridge {
+
+    public interface OnEngineMoveListener {
+
+        /**
+         * 引擎落子，已显示到BoardView，在主线程中回调
+         *
+         * @param color
+         * @param stone 停一手时为null
+         */
+        void onEngineMove(StoneColor color, Stone stone);
+
+        /**
+         * 引擎认输，在主线程中回调
+         *
+         * @param color
+         */
+        void onEngineResign(StoneColor color);
+
+        /**
+         * 引擎返回错误或无法解析的坐标，在主线程中回调
+         *
+         * @param message
+         */
+        void onEngineError(String message);
+    }
+
+    private final GtpClient mClient;
+    private final BoardView mBoardView;
+    private final BoardUpdateScheduler mScheduler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final RuleBoard mRuleBoard; // 只在主线程访问
+    private int mMoveNumber;
+    private volatile boolean mIsAnalyzing;
+    private volatile int mAnalysisGeneration; // 每次开始或停止分析时加一，读取线程据此丢弃过期的分析输出
+    private float[] mOwnership = new float[0]; // 转换为黑方视角的归属，只在读取线程访问
+
+    /**
+     * 创建桥接，以BoardView当前的局面为初始局面，黑方先行
+     *
+     * @param client
+     * @param boardView
+     */
+    public GtpBoardBridge(GtpClient client, BoardView boardView) {
+        mClient = client;
+        mBoardView = boardView;
+        mScheduler = new BoardUpdateScheduler(boardView);
+        mRuleBoard = new RuleBoard(boardView.getBoardSize());
+        mRuleBoard.setPosition(boardView.getBoardState(), StoneColor.BLACK);
+        mClient.setBoardSize(boardView.getBoardSize());
+    }
+
+    public BoardUpdateScheduler getScheduler() {
+        return mScheduler;
+    }
+
+    /**
+     * 落子并通知引擎，非法着手不会发送；引擎收到命令时会结束正在进行的分析，分析叠加层随之清除
+     *
+     * @param stone
+     * @return 是否为合法着手
+     * @throws IOException
+     */
+    public boolean play(Stone stone) throws IOException {
+        if (stone.intersection != null && !mRuleBoard.isLegal(stone.intersection.x, stone.intersection.y, stone.color)) {
+            return false;
+        }
+        String vertex = stone.intersection == null ? "pass"
+                : GtpVertex.toString(stone.intersection.x, stone.intersection.y, mRuleBoard.getBoardSize());
+        invalidateAnalysis();
+        mClient.send("play " + toGtpColor(stone.color) + " " + vertex, null);
+        applyStone(stone);
+        return true;
+    }
+
+    /**
+     * 请求引擎落子，回复后在主线程中显示并回调；正在进行的分析会被结束，分析叠加层随之清除
+     *
+     * @param color
+     * @param listener
+     * @throws IOException
+     */
+    public void genmove(final StoneColor color, final OnEngineMoveListener listener) throws IOException {
+        final int boardSize = mRuleBoard.getBoardSize();
+        invalidateAnalysis();
+        mClient.send("genmove " + toGtpColor(color), new GtpClient.Callback() {
+            @Override
+            public void onResponse(final boolean success, final String response) {
+                final int vertex = GtpVertex.parse(response, boardSize);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!success || vertex == GtpVertex.INVALID) {
+                            listener.onEngineError(response);
+                        } else if (vertex == GtpVertex.RESIGN) {
+                            listener.onEngineResign(color);
+                        } else {
+                            Stone stone = new Stone();
+                            stone.color = color;
+                            stone.number = mMoveNumber + 1;
+                            if (vertex != GtpVertex.PASS) {
+                                stone.intersection = Intersection.valueOf(vertex % boardSize, vertex / boardSize);
+                            }
+                            if (applyStone(stone)) {
+                                listener.onEngineMove(color, vertex == GtpVertex.PASS ? null : stone);
+                            } else {
+                                listener.onEngineError(response);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 开始分析，分析结果合并后显示在分析叠加层
+     *
+     * @param color    轮走方
+     * @param interval 输出间隔，单位为百分之一秒
+     * @throws IOException
+     */
+    public void startAnalysis(StoneColor color, int interval) throws IOException {
+        startAnalysis(color, interval, false);
+    }
+
+    /**
+     * 开始分析，分析结果合并后显示在分析叠加层
+     * <p>
+     * 显示归属时使用kata-analyze，引擎输出的归属为轮走方视角，轮走方为白方时取反后显示
+     *
+     * @param color     轮走方
+     * @param interval  输出间隔，单位为百分之一秒
+     * @param ownership 是否请求并显示归属，引擎需要支持kata-analyze
+     * @throws IOException
+     */
+    public void startAnalysis(StoneColor color, int interval, boolean ownership) throws IOException {
+        final int generation = ++mAnalysisGeneration;
+        final boolean isWhiteToMove = color == StoneColor.WHITE;
+        mIsAnalyzing = true;
+        String command = ownership
+                ? "kata-analyze " + toGtpColor(color) + " " + interval + " ownership true"
+                : "lz-analyze " + toGtpColor(color) + " " + interval;
+        int format = ownership ? GtpAnalysis.FORMAT_KATAGO : GtpAnalysis.FORMAT_LEELA_ZERO;
+        mClient.analyze(command, format, new GtpClient.AnalysisListener() {
+            @Override
+            public void onAnalysis(GtpAnalysis analysis) {
+                if (generation != mAnalysisGeneration) {
+                    // 已停止或重新开始分析，引擎结束回复前的输出不再显示
+                    return;
+                }
+                // 调度器会复制数组，analysis及mOwnership可以在回调返回后被复用
+                mScheduler.setAnalysisData(analysis.hasOwnership ? toBlackOwnership(analysis, isWhiteToMove) : null,
+                        analysis.winRates, analysis.visits);
+            }
+        }, new GtpClient.Callback() {
+            @Override
+            public void onResponse(boolean success, String response) {
+                // 回复结束后不会再有该命令的输出，再次清除可以覆盖停止时正在提交的最后一行
+                if (generation + 1 == mAnalysisGeneration && !mIsAnalyzing) {
+                    mScheduler.clearAnalysisData();
+                }
+            }
+        });
+    }
+
+    /**
+     * 停止分析并清除分析叠加层
+     *
+     * @throws IOException
+     */
+    public void stopAnalysis() throws IOException {
+        if (invalidateAnalysis()) {
+            // 引擎收到任意命令都会结束分析
+            mClient.send("protocol_version", null);
+        }
+    }
+
+    /**
+     * 使正在进行的分析失效并清除分析叠加层，在发送会结束分析的命令之前调用
+     *
+     * @return 调用前是否正在分析
+     */
+    private boolean invalidateAnalysis() {
+        boolean wasAnalyzing = mIsAnalyzing;
+        if (wasAnalyzing) {
+            mIsAnalyzing = false;
+            mAnalysisGeneration++;
+        }
+        mScheduler.clearAnalysisData();
+        return wasAnalyzing;
+    }
+
+    /**
+     * 停止调度，不会关闭GtpClient
+     */
+    public void release() {
+        mScheduler.release();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * 按规则落子并以一次批量修改显示落子及提子
+     *
+     * @param stone
+     * @return 非法着手返回false
+     */
+    private boolean applyStone(Stone stone) {
+        List<Intersection> captured = mRuleBoard.play(stone);
+        if (captured == null) {
+            return false;
+        }
+        mMoveNumber++;
+        if (stone.intersection == null) {
+            return true;
+        }
+        mBoardView.beginUpdate();
+        mBoardView.addStone(stone);
+        if (!captured.isEmpty()) {
+            mBoardView.removeStonesAt(captured, true);
+        }
+        mBoardView.setHighlightStone(stone);
+        mBoardView.endUpdate();
+        return true;
+    }
+
+    /**
+     * 将轮走方视角的归属转换为分析叠加层使用的黑方视角，在读取线程中调用
+     *
+     * @param analysis
+     * @param isWhiteToMove
+     * @return
+     */
+    private float[] toBlackOwnership(GtpAnalysis analysis, boolean isWhiteToMove) {
+        if (!isWhiteToMove) {
+            return analysis.ownership;
+        }
+        float[] ownership = analysis.ownership;
+        if (mOwnership.length != ownership.length) {
+            mOwnership = new float[ownership.length];
+        }
+        for (int i = 0; i < ownership.length; i++) {
+            mOwnership[i] = -ownership[i];
+        }
+        return mOwnership;
+    }
+
+    private static String toGtpColor(StoneColor color) {
+        return color == StoneColor.BLACK ? "b" : "w";
+    }
+}
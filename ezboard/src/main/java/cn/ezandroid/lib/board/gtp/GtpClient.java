@@ -0,0 +1,332 @@
+package cn.ezandroid.lib.board.gtp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+
+/**
+ * GTP引擎客户端
+ * <p>
+ * 命令带序号写入引擎的标准输入后立即返回，不等待回复，多条命令可以连续发送；
+ * 独立的读取线程按字节读取标准输出，按序号把回复交给对应命令的回调；
+ * lz-analyze、kata-analyze等分析命令的每行输出在复用的行缓冲区中直接解析，不产生字符串
+ * <p>
+ * 回调都在读取线程中执行，需要更新界面时应转到主线程，见GtpBoardBridge
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class GtpClient implements Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public interface Callback {
+
+        /**
+         * 收到命令回复，在读取线程中回调
+         *
+         * @param success  回复以'='开头时为true，以'?'开头时为false
+         * @param response 去掉状态及序号后的回复内容，多行以'\n'分隔
+         */
+        void onResponse(boolean success, String response);
+    }
+
+    public interface AnalysisListener {
+
+        /**
+         * 收到一行分析输出，在读取线程中回调；analysis在下一行输出时被复用
+         *
+         * @param analysis
+         */
+        void onAnalysis(GtpAnalysis analysis);
+    }
+
+    public interface OnCloseListener {
+
+        /**
+         * 引擎输出结束或读取失败，在读取线程中回调
+         *
+         * @param e 正常结束时为null
+         */
+        void onClose(IOException e);
+    }
+
+    /**
+     * 已发送但尚未完成回复的命令
+     */
+    private static class PendingCommand {
+
+        final int mId;
+        final Callback mCallback;
+        final AnalysisListener mAnalysisListener;
+        final int mAnalysisFormat;
+
+        PendingCommand(int id, Callback callback, AnalysisListener analysisListener, int analysisFormat) {
+            mId = id;
+            mCallback = callback;
+            mAnalysisListener = analysisListener;
+            mAnalysisFormat = analysisFormat;
+        }
+    }
+
+    private final Process mProcess;
+    private final InputStream mInput;
+    private final Writer mWriter;
+    private final Thread mReaderThread;
+
+    private final ArrayDeque<PendingCommand> mPendingCommands = new ArrayDeque<>(); // 在mPendingCommands锁内访问
+    private int mNextId = 1;
+
+    private volatile OnCloseListener mOnCloseListener;
+    private volatile boolean mIsClosed;
+
+    private int mBoardSize = 19;
+    private GtpAnalysis mAnalysis; // 只在读取线程访问
+
+    // 读取缓冲区及行缓冲区，只在读取线程访问
+    private final byte[] mBuffer = new byte[8192];
+    private int mPosition;
+    private int mLimit;
+    private char[] mLine = new char[1024];
+    private int mLineLength;
+
+    /**
+     * 连接已启动的引擎进程
+     *
+     * @param process
+     */
+    public GtpClient(Process process) {
+        this(process, process.getInputStream(), process.getOutputStream());
+    }
+
+    /**
+     * 连接任意GTP输入输出流，如网络连接
+     *
+     * @param input  引擎的输出
+     * @param output 引擎的输入
+     */
+    public GtpClient(InputStream input, OutputStream output) {
+        this(null, input, output);
+    }
+
+    private GtpClient(Process process, InputStream input, OutputStream output) {
+        mProcess = process;
+        mInput = input;
+        mWriter = new OutputStreamWriter(output, UTF_8);
+        mReaderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readLoop();
+            }
+        }, "GtpClient");
+        mReaderThread.setDaemon(true);
+        mReaderThread.start();
+    }
+
+    public void setOnCloseListener(OnCloseListener listener) {
+        mOnCloseListener = listener;
+    }
+
+    /**
+     * 设置解析分析输出及坐标时使用的棋盘大小，不会向引擎发送boardsize命令
+     *
+     * @param boardSize
+     */
+    public synchronized void setBoardSize(int boardSize) {
+        mBoardSize = boardSize;
+    }
+
+    public synchronized int getBoardSize() {
+        return mBoardSize;
+    }
+
+    /**
+     * 发送命令，不等待回复
+     *
+     * @param command  不含序号及换行的命令，如"play b D4"
+     * @param callback 为null时忽略回复
+     * @return 命令序号
+     * @throws IOException 写入失败或客户端已关闭
+     */
+    public int send(String command, Callback callback) throws IOException {
+        return send(command, callback, null, GtpAnalysis.FORMAT_LEELA_ZERO);
+    }
+
+    /**
+     * 发送分析命令，如"lz-analyze b 10"；引擎收到下一条命令时停止分析并结束该命令的回复
+     *
+     * @param command
+     * @param format   输出格式，lz-analyze为GtpAnalysis.FORMAT_LEELA_ZERO，kata-analyze为GtpAnalysis.FORMAT_KATAGO
+     * @param listener 每行分析输出的回调
+     * @param callback 分析结束时的回调，可以为null
+     * @return 命令序号
+     * @throws IOException
+     */
+    public int analyze(String command, int format, AnalysisListener listener, Callback callback) throws IOException {
+        return send(command, callback, listener, format);
+    }
+
+    /**
+     * 获取已发送但尚未完成回复的命令数
+     *
+     * @return
+     */
+    public int getPendingCount() {
+        synchronized (mPendingCommands) {
+            return mPendingCommands.size();
+        }
+    }
+
+    private synchronized int send(String command, Callback callback, AnalysisListener listener, int format)
+            throws IOException {
+        if (mIsClosed) {
+            throw new IOException("GTP client closed");
+        }
+        int id = mNextId++;
+        synchronized (mPendingCommands) {
+            mPendingCommands.addLast(new PendingCommand(id, callback, listener, format));
+        }
+        mWriter.write(Integer.toString(id));
+        mWriter.write(' ');
+        mWriter.write(command);
+        mWriter.write('\n');
+        mWriter.flush();
+        return id;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIsClosed = true;
+        try {
+            synchronized (this) {
+                mWriter.close();
+            }
+        } finally {
+            mInput.close();
+            if (mProcess != null) {
+                mProcess.destroy();
+            }
+        }
+    }
+
+    private void readLoop() {
+        IOException error = null;
+        try {
+            PendingCommand command = null; // 正在接收回复的命令
+            StringBuilder response = new StringBuilder();
+            boolean success = false;
+            while (readLine()) {
+                if (command == null) {
+                    if (mLineLength == 0 || (mLine[0] != '=' && mLine[0] != '?')) {
+                        // 回复之间的空行及引擎的其他输出
+                        continue;
+                    }
+                    success = mLine[0] == '=';
+                    int position = 1;
+                    int id = 0;
+                    boolean hasId = false;
+                    while (position < mLineLength && mLine[position] >= '0' && mLine[position] <= '9') {
+                        id = id * 10 + (mLine[position++] - '0');
+                        hasId = true;
+                    }
+                    command = pollCommand(hasId ? id : -1);
+                    response.setLength(0);
+                    while (position < mLineLength && mLine[position] == ' ') {
+                        position++;
+                    }
+                    response.append(mLine, position, mLineLength - position);
+                } else if (mLineLength == 0) {
+                    // 空行结束回复
+                    if (command != null && command.mCallback != null) {
+                        command.mCallback.onResponse(success, response.toString());
+                    }
+                    command = null;
+                } else if (command.mAnalysisListener != null) {
+                    dispatchAnalysis(command.mAnalysisListener, command.mAnalysisFormat);
+                } else {
+                    if (response.length() > 0) {
+                        response.append('\n');
+                    }
+                    response.append(mLine, 0, mLineLength);
+                }
+            }
+        } catch (IOException e) {
+            if (!mIsClosed) {
+                error = e;
+            }
+        }
+        mIsClosed = true;
+        OnCloseListener listener = mOnCloseListener;
+        if (listener != null) {
+            listener.onClose(error);
+        }
+    }
+
+    private void dispatchAnalysis(AnalysisListener listener, int format) {
+        int boardSize = getBoardSize();
+        if (mAnalysis == null || mAnalysis.boardSize != boardSize || mAnalysis.format != format) {
+            mAnalysis = new GtpAnalysis(boardSize, format);
+        }
+        if (mAnalysis.parse(mLine, mLineLength)) {
+            listener.onAnalysis(mAnalysis);
+        }
+    }
+
+    /**
+     * 取出序号对应的命令，GTP按发送顺序回复，序号之前的命令视为没有回复而丢弃
+     *
+     * @param id 回复中没有序号时为-1，对应最早的命令
+     * @return 找不到时返回一个没有回调的占位命令
+     */
+    private PendingCommand pollCommand(int id) {
+        synchronized (mPendingCommands) {
+            while (!mPendingCommands.isEmpty()) {
+                PendingCommand command = mPendingCommands.pollFirst();
+                if (id < 0 || command.mId == id) {
+                    return command;
+                }
+            }
+        }
+        return new PendingCommand(id, null, null, GtpAnalysis.FORMAT_LEELA_ZERO);
+    }
+
+    /**
+     * 读取一行到mLine，去掉行尾的'\r'，按GTP约定把制表符等控制字符换成空格
+     *
+     * @return 输出结束时返回false
+     * @throws IOException
+     */
+    private boolean readLine() throws IOException {
+        mLineLength = 0;
+        boolean hasData = false;
+        while (true) {
+            if (mPosition >= mLimit) {
+                mLimit = mInput.read(mBuffer, 0, mBuffer.length);
+                mPosition = 0;
+                if (mLimit <= 0) {
+                    mLimit = 0;
+                    return hasData;
+                }
+            }
+            hasData = true;
+            int b = mBuffer[mPosition++] & 0xFF;
+            if (b == '\n') {
+                return true;
+            } else if (b == '\r') {
+                continue;
+            }
+            if (mLineLength == mLine.length) {
+                char[] line = new char[mLine.length * 2];
+                System.arraycopy(mLine, 0, line, 0, mLineLength);
+                mLine = line;
+            }
+            // 分析输出只包含ASCII字符，其他字节按Latin-1保存
+            mLine[mLineLength++] = b < ' ' ? ' ' : (char) b;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package cn.ezandroid.lib.board.gtp;
+
+/**
+ * GTP坐标转换
+ * <p>
+ * GTP坐标如"D4"，列用字母表示且跳过I，行号从棋盘下方开始；
+ * 转换后的交叉点索引为x + y * boardSize，y从棋盘上方开始，与BoardView一致
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public final class GtpVertex {
+
+    public static final int PASS = -1; // 停一手
+    public static final int RESIGN = -2; // 认输
+    public static final int INVALID = -3; // 无法解析
+
+    private static final String COLUMNS = "ABCDEFGHJKLMNOPQRSTUVWXYZ";
+
+    private GtpVertex() {
+    }
+
+    /**
+     * 解析text中[start, end)范围内的坐标，不产生对象
+     *
+     * @param text
+     * @param start
+     * @param end
+     * @param boardSize
+     * @return 交叉点索引，或PASS、RESIGN、INVALID
+     */
+    public static int parse(CharSequence text, int start, int end, int boardSize) {
+        int length = end - start;
+        if (length == 4 && regionMatches(text, start, "pass")) {
+            return PASS;
+        }
+        if (length == 6 && regionMatches(text, start, "resign")) {
+            return RESIGN;
+        }
+        if (length < 2 || length > 3) {
+            return INVALID;
+        }
+        int row = 0;
+        for (int i = start + 1; i < end; i++) {
+            row = appendDigit(row, text.charAt(i));
+        }
+        return toIndex(text.charAt(start), row, boardSize);
+    }
+
+    /**
+     * 解析字符数组中[start, end)范围内的坐标，不产生对象
+     *
+     * @param text
+     * @param start
+     * @param end
+     * @param boardSize
+     * @return 交叉点索引，或PASS、RESIGN、INVALID
+     */
+    public static int parse(char[] text, int start, int end, int boardSize) {
+        int length = end - start;
+        if (length == 4 && regionMatches(text, start, "pass")) {
+            return PASS;
+        }
+        if (length == 6 && regionMatches(text, start, "resign")) {
+            return RESIGN;
+        }
+        if (length < 2 || length > 3) {
+            return INVALID;
+        }
+        int row = 0;
+        for (int i = start + 1; i < end; i++) {
+            row = appendDigit(row, text[i]);
+        }
+        return toIndex(text[start], row, boardSize);
+    }
+
+    private static int appendDigit(int row, char d) {
+        if (row < 0 || d < '0' || d > '9') {
+            return -1;
+        }
+        return row * 10 + (d - '0');
+    }
+
+    private static int toIndex(char column, int row, int boardSize) {
+        int x = COLUMNS.indexOf(Character.toUpperCase(column));
+        if (x < 0 || x >= boardSize || row < 1 || row > boardSize) {
+            return INVALID;
+        }
+        return x + (boardSize - row) * boardSize;
+    }
+
+    /**
+     * 解析完整的坐标文字
+     *
+     * @param text
+     * @param boardSize
+     * @return 交叉点索引，或PASS、RESIGN、INVALID
+     */
+    public static int parse(CharSequence text, int boardSize) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return parse(text, start, end, boardSize);
+    }
+
+    /**
+     * 将交叉点转换为GTP坐标
+     *
+     * @param x
+     * @param y
+     * @param boardSize
+     * @return
+     */
+    public static String toString(int x, int y, int boardSize) {
+        return String.valueOf(COLUMNS.charAt(x)) + (boardSize - y);
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(char[] text, int start, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.toLowerCase(text[start + i]) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
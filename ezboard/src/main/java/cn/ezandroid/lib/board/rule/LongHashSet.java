@@ -0,0 +1,124 @@
+package cn.ezandroid.lib.board.rule;
+
+/**
+ * 基于开放寻址的long集合，用于记录局面哈希历史，添加和查找均不产生装箱对象
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class LongHashSet {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] mKeys; // 0表示空槽，值为0的元素单独记录
+    private boolean mHasZero;
+    private int mSize;
+    private int mMask;
+    private int mThreshold;
+
+    public LongHashSet() {
+        this(64);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mMask = capacity - 1;
+        mThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * 添加元素
+     *
+     * @param key
+     * @return 集合中原本不存在该元素时返回true
+     */
+    public boolean add(long key) {
+        if (key == 0) {
+            if (mHasZero) {
+                return false;
+            }
+            mHasZero = true;
+            mSize++;
+            return true;
+        }
+        int i = slot(key, mMask);
+        while (mKeys[i] != 0) {
+            if (mKeys[i] == key) {
+                return false;
+            }
+            i = (i + 1) & mMask;
+        }
+        mKeys[i] = key;
+        if (++mSize > mThreshold) {
+            rehash();
+        }
+        return true;
+    }
+
+    /**
+     * 判断是否包含元素
+     *
+     * @param key
+     * @return
+     */
+    public boolean contains(long key) {
+        if (key == 0) {
+            return mHasZero;
+        }
+        int i = slot(key, mMask);
+        while (mKeys[i] != 0) {
+            if (mKeys[i] == key) {
+                return true;
+            }
+            i = (i + 1) & mMask;
+        }
+        return false;
+    }
+
+    /**
+     * 获取元素个数
+     *
+     * @return
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 清空集合，保留已分配的空间
+     */
+    public void clear() {
+        for (int i = 0; i < mKeys.length; i++) {
+            mKeys[i] = 0;
+        }
+        mHasZero = false;
+        mSize = 0;
+    }
+
+    private void rehash() {
+        long[] oldKeys = mKeys;
+        allocate(oldKeys.length << 1);
+        for (long key : oldKeys) {
+            if (key != 0) {
+                int i = slot(key, mMask);
+                while (mKeys[i] != 0) {
+                    i = (i + 1) & mMask;
+                }
+                mKeys[i] = key;
+            }
+        }
+    }
+}
@@ -0,0 +1,623 @@
+package cn.ezandroid.lib.board.rule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.ezandroid.lib.board.BoardState;
+import cn.ezandroid.lib.board.Intersection;
+import cn.ezandroid.lib.board.Move;
+import cn.ezandroid.lib.board.Stone;
+import cn.ezandroid.lib.board.StoneColor;
+import cn.ezandroid.lib.board.Zobrist;
+
+/**
+ * 规则棋盘
+ * <p>
+ * 棋串使用并查集维护，每个棋串的根节点记录伪气数(棋串中每个棋子相邻空点数之和)及棋子数，同一棋串的棋子通过循环链表串联；
+ * 伪气数为0当且仅当棋串无气，因此落子、提子均只需处理落子点周围的棋串，不需要洪水填充
+ * <p>
+ * 支持禁止自杀、单劫及全局同形(superko)判断；局面的Zobrist哈希在落子、提子时增量维护，并记录在哈希历史中，
+ * 每步的全局同形判断只需O(1)时间
+ * <p>
+ * 不是线程安全的，可以在后台线程中独立使用
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class RuleBoard {
+
+    public static final byte EMPTY = 0;
+    public static final byte BLACK = 1;
+    public static final byte WHITE = 2;
+
+    /**
+     * 非法着手
+     */
+    public static final int ILLEGAL = -1;
+
+    /**
+     * 不判断全局同形，只禁止单劫
+     */
+    public static final int SUPERKO_NONE = 0;
+
+    /**
+     * 局面同形禁止，不区分行棋方
+     */
+    public static final int SUPERKO_POSITIONAL = 1;
+
+    /**
+     * 情景同形禁止，同形且行棋方相同时禁止
+     */
+    public static final int SUPERKO_SITUATIONAL = 2;
+
+    private final int mBoardSize;
+    private final byte[] mColors;
+    private final int[] mParent; // 并查集父节点
+    private final int[] mNext; // 同一棋串中下一个棋子，构成循环链表
+    private final int[] mLiberties; // 棋串伪气数，仅根节点有效
+    private final int[] mChainSize; // 棋串棋子数，仅根节点有效
+    private final int[] mNeighbors; // 每个交叉点的4个相邻点，超出棋盘为-1
+
+    private final int[] mCaptured; // 最近一次落子提掉的棋子
+    private int mCapturedCount;
+
+    private int mKoPoint = -1; // 劫争禁着点
+    private byte mKoColor = EMPTY; // 劫争禁着方
+
+    private int mBlackCaptures; // 黑方提子总数
+    private int mWhiteCaptures; // 白方提子总数
+
+    private final long[] mBlackKeys; // 各交叉点黑子的Zobrist键
+    private final long[] mWhiteKeys; // 各交叉点白子的Zobrist键
+    private long mHash; // 当前局面的Zobrist哈希，不含行棋方
+    private byte mNextColor = BLACK; // 下一手的行棋方，仅用于情景同形判断
+
+    private int mSuperkoRule = SUPERKO_NONE;
+    private final LongHashSet mHistory = new LongHashSet(); // 历史局面哈希
+
+    /**
+     * 创建空的规则棋盘
+     *
+     * @param boardSize
+     * @throws IllegalArgumentException 棋盘大小小于1或大于Zobrist.MAX_BOARD_SIZE
+     */
+    public RuleBoard(int boardSize) {
+        Zobrist.checkBoardSize(boardSize);
+        mBoardSize = boardSize;
+        int count = boardSize * boardSize;
+        mColors = new byte[count];
+        mParent = new int[count];
+        mNext = new int[count];
+        mLiberties = new int[count];
+        mChainSize = new int[count];
+        mCaptured = new int[count];
+        mNeighbors = new int[count * 4];
+        mBlackKeys = new long[count];
+        mWhiteKeys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int x = i % boardSize;
+            int y = i / boardSize;
+            mNeighbors[i * 4] = x > 0 ? i - 1 : -1;
+            mNeighbors[i * 4 + 1] = x < boardSize - 1 ? i + 1 : -1;
+            mNeighbors[i * 4 + 2] = y > 0 ? i - boardSize : -1;
+            mNeighbors[i * 4 + 3] = y < boardSize - 1 ? i + boardSize : -1;
+            mParent[i] = i;
+            mNext[i] = i;
+            mBlackKeys[i] = Zobrist.getKey(x, y, StoneColor.BLACK);
+            mWhiteKeys[i] = Zobrist.getKey(x, y, StoneColor.WHITE);
+        }
+        mHistory.add(getHistoryKey(mHash, mNextColor));
+    }
+
+    /**
+     * 获取棋盘大小
+     *
+     * @return
+     */
+    public int getBoardSize() {
+        return mBoardSize;
+    }
+
+    /**
+     * 清空棋盘
+     */
+    public void clear() {
+        for (int i = 0; i < mColors.length; i++) {
+            mColors[i] = EMPTY;
+            mParent[i] = i;
+            mNext[i] = i;
+            mLiberties[i] = 0;
+            mChainSize[i] = 0;
+        }
+        mCapturedCount = 0;
+        mKoPoint = -1;
+        mKoColor = EMPTY;
+        mBlackCaptures = 0;
+        mWhiteCaptures = 0;
+        mHash = 0;
+        mNextColor = BLACK;
+        mHistory.clear();
+        mHistory.add(getHistoryKey(mHash, mNextColor));
+    }
+
+    /**
+     * 摆放局面，不进行规则判断，劫争禁着点及提子数清零，并从该局面开始重新记录历史
+     *
+     * @param state     合法局面，即每个棋串至少有一口气
+     * @param nextColor 下一手的行棋方
+     */
+    public void setPosition(BoardState state, StoneColor nextColor) {
+        clear();
+        for (int y = 0; y < mBoardSize; y++) {
+            for (int x = 0; x < mBoardSize; x++) {
+                StoneColor color = state.getColor(x, y);
+                if (color != null) {
+                    // 合法局面中每个棋串的气在摆放过程中始终为空点，不会产生提子
+                    place(x + y * mBoardSize, toColor(color));
+                }
+            }
+        }
+        mCapturedCount = 0;
+        mKoPoint = -1;
+        mKoColor = EMPTY;
+        mNextColor = toColor(nextColor);
+        mHistory.clear();
+        mHistory.add(getHistoryKey(mHash, mNextColor));
+    }
+
+    /**
+     * 设置全局同形规则，修改后从当前局面开始重新记录历史
+     *
+     * @param superkoRule SUPERKO_NONE, SUPERKO_POSITIONAL或SUPERKO_SITUATIONAL
+     */
+    public void setSuperkoRule(int superkoRule) {
+        if (mSuperkoRule != superkoRule) {
+            mSuperkoRule = superkoRule;
+            mHistory.clear();
+            mHistory.add(getHistoryKey(mHash, mNextColor));
+        }
+    }
+
+    /**
+     * 获取全局同形规则
+     *
+     * @return
+     */
+    public int getSuperkoRule() {
+        return mSuperkoRule;
+    }
+
+    /**
+     * 获取当前局面的Zobrist哈希
+     * <p>
+     * 只与棋子分布有关，与BoardState.getZobristHash()一致，可以作为分析结果等数据的缓存键
+     *
+     * @return
+     */
+    public long getHash() {
+        return mHash;
+    }
+
+    /**
+     * 获取包含行棋方的局面哈希
+     *
+     * @return
+     */
+    public long getSituationalHash() {
+        return mNextColor == WHITE ? mHash ^ Zobrist.WHITE_TO_PLAY : mHash;
+    }
+
+    /**
+     * 获取指定交叉点的颜色
+     *
+     * @param x
+     * @param y
+     * @return EMPTY, BLACK或WHITE
+     */
+    public byte getColor(int x, int y) {
+        return mColors[x + y * mBoardSize];
+    }
+
+    /**
+     * 获取指定交叉点上的棋子颜色
+     *
+     * @param x
+     * @param y
+     * @return 没有棋子时返回null
+     */
+    public StoneColor getStoneColor(int x, int y) {
+        return toStoneColor(mColors[x + y * mBoardSize]);
+    }
+
+    /**
+     * 获取指定交叉点所在棋串的棋子数
+     *
+     * @param x
+     * @param y
+     * @return 空点返回0
+     */
+    public int getChainSize(int x, int y) {
+        int index = x + y * mBoardSize;
+        return mColors[index] == EMPTY ? 0 : mChainSize[find(index)];
+    }
+
+    /**
+     * 判断指定交叉点所在棋串是否只剩一口气(被叫吃)
+     *
+     * @param x
+     * @param y
+     * @return
+     */
+    public boolean isInAtari(int x, int y) {
+        int index = x + y * mBoardSize;
+        if (mColors[index] == EMPTY) {
+            return false;
+        }
+        int root = find(index);
+        int liberty = -1;
+        int stone = root;
+        do {
+            for (int k = stone * 4; k < stone * 4 + 4; k++) {
+                int n = mNeighbors[k];
+                if (n >= 0 && mColors[n] == EMPTY) {
+                    if (liberty >= 0 && liberty != n) {
+                        return false;
+                    }
+                    liberty = n;
+                }
+            }
+            stone = mNext[stone];
+        } while (stone != root);
+        return liberty >= 0;
+    }
+
+    /**
+     * 获取指定方的提子总数
+     *
+     * @param color
+     * @return
+     */
+    public int getCaptures(StoneColor color) {
+        return color == StoneColor.BLACK ? mBlackCaptures : mWhiteCaptures;
+    }
+
+    /**
+     * 获取当前劫争禁着点
+     *
+     * @return 没有劫争时返回null
+     */
+    public Intersection getKoPoint() {
+        return mKoPoint < 0 ? null : Intersection.valueOf(mKoPoint % mBoardSize, mKoPoint / mBoardSize);
+    }
+
+    /**
+     * 判断着手是否合法
+     *
+     * @param x
+     * @param y
+     * @param color
+     * @return
+     */
+    public boolean isLegal(int x, int y, StoneColor color) {
+        if (x < 0 || x >= mBoardSize || y < 0 || y >= mBoardSize) {
+            return false;
+        }
+        return isLegal(x + y * mBoardSize, toColor(color));
+    }
+
+    /**
+     * 落子
+     *
+     * @param x
+     * @param y
+     * @param color
+     * @return 提子数，非法着手返回ILLEGAL
+     */
+    public int play(int x, int y, StoneColor color) {
+        if (x < 0 || x >= mBoardSize || y < 0 || y >= mBoardSize) {
+            return ILLEGAL;
+        }
+        int index = x + y * mBoardSize;
+        byte c = toColor(color);
+        if (!isLegal(index, c)) {
+            return ILLEGAL;
+        }
+        place(index, c);
+        return mCapturedCount;
+    }
+
+    /**
+     * 落子
+     *
+     * @param move
+     * @return 提子数，停一手返回0，非法着手返回ILLEGAL
+     */
+    public int play(Move move) {
+        if (move.isPass()) {
+            pass();
+            return 0;
+        }
+        return play(move.getX(), move.getY(), move.getColor());
+    }
+
+    /**
+     * 落子
+     * <p>
+     * 停一手的棋子会清除劫争禁着点并返回空列表
+     *
+     * @param stone
+     * @return 被提掉的棋子所在交叉点，非法着手返回null
+     */
+    public List<Intersection> play(Stone stone) {
+        if (stone.isPassStone()) {
+            pass();
+            return new ArrayList<>(0);
+        }
+        if (play(stone.intersection.x, stone.intersection.y, stone.color) == ILLEGAL) {
+            return null;
+        }
+        List<Intersection> captured = new ArrayList<>(mCapturedCount);
+        for (int i = 0; i < mCapturedCount; i++) {
+            captured.add(Intersection.valueOf(mCaptured[i] % mBoardSize, mCaptured[i] / mBoardSize));
+        }
+        return captured;
+    }
+
+    /**
+     * 停一手
+     */
+    public void pass() {
+        mCapturedCount = 0;
+        mKoPoint = -1;
+        mKoColor = EMPTY;
+        mNextColor = mNextColor == BLACK ? WHITE : BLACK;
+        mHistory.add(getHistoryKey(mHash, mNextColor));
+    }
+
+    /**
+     * 获取最近一次落子的提子数
+     *
+     * @return
+     */
+    public int getCapturedCount() {
+        return mCapturedCount;
+    }
+
+    /**
+     * 获取最近一次落子提掉的第i个棋子的交叉点索引(x + y * boardSize)
+     *
+     * @param i
+     * @return
+     */
+    public int getCapturedIndex(int i) {
+        return mCaptured[i];
+    }
+
+    /**
+     * 导出当前局面
+     *
+     * @return
+     */
+    public BoardState toBoardState() {
+        return BoardState.valueOf(mBoardSize, mColors, BLACK, WHITE);
+    }
+
+    boolean isLegal(int index, byte color) {
+        if (mColors[index] != EMPTY) {
+            return false;
+        }
+        if (index == mKoPoint && color == mKoColor) {
+            return false;
+        }
+        boolean legal = false;
+        long capturedHash = 0;
+        int captureRoot0 = -1;
+        int captureRoot1 = -1;
+        int captureRoot2 = -1;
+        for (int k = index * 4; k < index * 4 + 4; k++) {
+            int n = mNeighbors[k];
+            if (n < 0) {
+                continue;
+            }
+            if (mColors[n] == EMPTY) {
+                legal = true;
+                continue;
+            }
+            int root = find(n);
+            int adjacency = countAdjacency(index, root);
+            if (mColors[n] == color) {
+                // 友方棋串除落子点外还有其他气
+                if (mLiberties[root] > adjacency) {
+                    legal = true;
+                }
+            } else if (mLiberties[root] == adjacency) {
+                // 能提掉对方棋串
+                legal = true;
+                if (mSuperkoRule != SUPERKO_NONE
+                        && root != captureRoot0 && root != captureRoot1 && root != captureRoot2) {
+                    capturedHash ^= getChainHash(root);
+                    if (captureRoot0 < 0) {
+                        captureRoot0 = root;
+                    } else if (captureRoot1 < 0) {
+                        captureRoot1 = root;
+                    } else {
+                        captureRoot2 = root;
+                    }
+                }
+            }
+        }
+        if (!legal || mSuperkoRule == SUPERKO_NONE) {
+            return legal;
+        }
+        long hash = mHash ^ (color == BLACK ? mBlackKeys[index] : mWhiteKeys[index]) ^ capturedHash;
+        return !mHistory.contains(getHistoryKey(hash, color == BLACK ? WHITE : BLACK));
+    }
+
+    private long getChainHash(int root) {
+        long[] keys = mColors[root] == BLACK ? mBlackKeys : mWhiteKeys;
+        long hash = 0;
+        int stone = root;
+        do {
+            hash ^= keys[stone];
+            stone = mNext[stone];
+        } while (stone != root);
+        return hash;
+    }
+
+    private long getHistoryKey(long hash, byte nextColor) {
+        return mSuperkoRule == SUPERKO_SITUATIONAL && nextColor == WHITE ? hash ^ Zobrist.WHITE_TO_PLAY : hash;
+    }
+
+    /**
+     * 放置棋子并处理合并和提子，调用前需保证着手合法
+     *
+     * @param index
+     * @param color
+     */
+    void place(int index, byte color) {
+        mCapturedCount = 0;
+        mColors[index] = color;
+        mHash ^= color == BLACK ? mBlackKeys[index] : mWhiteKeys[index];
+        mParent[index] = index;
+        mNext[index] = index;
+        mChainSize[index] = 1;
+        int liberties = 0;
+        for (int k = index * 4; k < index * 4 + 4; k++) {
+            int n = mNeighbors[k];
+            if (n < 0) {
+                continue;
+            }
+            if (mColors[n] == EMPTY) {
+                liberties++;
+            } else {
+                // 落子点不再是相邻棋串的气
+                mLiberties[find(n)]--;
+            }
+        }
+        mLiberties[index] = liberties;
+
+        byte opponent = color == BLACK ? WHITE : BLACK;
+        for (int k = index * 4; k < index * 4 + 4; k++) {
+            int n = mNeighbors[k];
+            if (n < 0) {
+                continue;
+            }
+            if (mColors[n] == color) {
+                union(index, n);
+            } else if (mColors[n] == opponent) {
+                int root = find(n);
+                if (mLiberties[root] == 0) {
+                    removeChain(root);
+                }
+            }
+        }
+        if (color == BLACK) {
+            mBlackCaptures += mCapturedCount;
+        } else {
+            mWhiteCaptures += mCapturedCount;
+        }
+
+        // 单提一子且落子后自身为单子单气时形成劫
+        int root = find(index);
+        if (mCapturedCount == 1 && mChainSize[root] == 1 && mLiberties[root] == 1) {
+            mKoPoint = mCaptured[0];
+            mKoColor = opponent;
+        } else {
+            mKoPoint = -1;
+            mKoColor = EMPTY;
+        }
+
+        mNextColor = opponent;
+        mHistory.add(getHistoryKey(mHash, mNextColor));
+    }
+
+    int find(int index) {
+        int parent = mParent[index];
+        while (parent != index) {
+            // 路径减半
+            int grand = mParent[parent];
+            mParent[index] = grand;
+            index = grand;
+            parent = mParent[index];
+        }
+        return index;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (mChainSize[rootA] < mChainSize[rootB]) {
+            int tmp = rootA;
+            rootA = rootB;
+            rootB = tmp;
+        }
+        mParent[rootB] = rootA;
+        mChainSize[rootA] += mChainSize[rootB];
+        mLiberties[rootA] += mLiberties[rootB];
+        // 拼接两个循环链表
+        int next = mNext[rootA];
+        mNext[rootA] = mNext[rootB];
+        mNext[rootB] = next;
+    }
+
+    private int countAdjacency(int index, int root) {
+        int count = 0;
+        for (int k = index * 4; k < index * 4 + 4; k++) {
+            int n = mNeighbors[k];
+            if (n >= 0 && mColors[n] != EMPTY && find(n) == root) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void removeChain(int root) {
+        long[] keys = mColors[root] == BLACK ? mBlackKeys : mWhiteKeys;
+        int stone = root;
+        do {
+            mHash ^= keys[stone];
+            mColors[stone] = EMPTY;
+            mCaptured[mCapturedCount++] = stone;
+            stone = mNext[stone];
+        } while (stone != root);
+
+        // 被提棋子成为相邻棋串的气
+        for (int i = mCapturedCount - mChainSize[root]; i < mCapturedCount; i++) {
+            int captured = mCaptured[i];
+            for (int k = captured * 4; k < captured * 4 + 4; k++) {
+                int n = mNeighbors[k];
+                if (n >= 0 && mColors[n] != EMPTY) {
+                    mLiberties[find(n)]++;
+                }
+            }
+        }
+        for (int i = mCapturedCount - mChainSize[root]; i < mCapturedCount; i++) {
+            int captured = mCaptured[i];
+            mParent[captured] = captured;
+            mNext[captured] = captured;
+            mLiberties[captured] = 0;
+            if (captured != root) {
+                mChainSize[captured] = 0;
+            }
+        }
+        mChainSize[root] = 0;
+    }
+
+    static byte toColor(StoneColor color) {
+        return color == StoneColor.BLACK ? BLACK : WHITE;
+    }
+
+    static StoneColor toStoneColor(byte color) {
+        switch (color) {
+            case BLACK:
+                return StoneColor.BLACK;
+            case WHITE:
+                return StoneColor.WHITE;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package cn.ezandroid.lib.board.sgf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.ezandroid.lib.board.BoardState;
+import cn.ezandroid.lib.board.Intersection;
+import cn.ezandroid.lib.board.Stone;
+import cn.ezandroid.lib.board.StoneColor;
+import cn.ezandroid.lib.board.game.GameNode;
+import cn.ezandroid.lib.board.game.GameTree;
+
+/**
+ * 根据SGF解析事件构建棋谱树
+ * <p>
+ * SGF节点内的属性没有固定顺序，每个节点的着手、注释及摆子先缓存，到下一个节点、变化分支或棋谱结束时再一并提交；
+ * 根节点的摆子作为棋谱树的初始局面，注释(C属性)保存到对应的节点，没有着手的非根节点的注释合并到当前节点；
+ * 非根节点的摆子不会被记录
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class GameTreeBuilder extends SgfHandlerAdapter {
+
+    private int mBoardSize;
+
+    private GameTree mGameTree;
+    private GameNode mCurrent;
+    private final List<GameNode> mVariationStack = new ArrayList<>();
+
+    // 正在解析的节点
+    private boolean mHasPendingNode;
+    private Stone mPendingMove;
+    private String mPendingComment;
+    private final List<Stone> mPendingSetup = new ArrayList<>(); // AE时color为null
+
+    /**
+     * 从解析器中读取下一局棋谱并构建棋谱树
+     *
+     * @param reader
+     * @return 没有更多棋谱时返回null
+     * @throws IOException
+     * @throws IllegalArgumentException 棋谱的棋盘大小超过Zobrist.MAX_BOARD_SIZE
+     */
+    public static GameTree build(SgfReader reader) throws IOException {
+        GameTreeBuilder builder = new GameTreeBuilder();
+        return reader.nextGame(builder) ? builder.getGameTree() : null;
+    }
+
+    /**
+     * 获取构建的棋谱树
+     *
+     * @return
+     */
+    public GameTree getGameTree() {
+        return mGameTree;
+    }
+
+    @Override
+    public void onGameStart(int gameIndex) {
+        mBoardSize = 19;
+        mGameTree = null;
+        mCurrent = null;
+        mVariationStack.clear();
+        clearPendingNode();
+    }
+
+    @Override
+    public boolean onVariationStart(int depth) {
+        commitNode();
+        ensureGameTree();
+        mVariationStack.add(mCurrent);
+        return true;
+    }
+
+    @Override
+    public void onVariationEnd(int depth) {
+        commitNode();
+        mCurrent = mVariationStack.remove(mVariationStack.size() - 1);
+    }
+
+    @Override
+    public void onNode() {
+        commitNode();
+        mHasPendingNode = true;
+    }
+
+    @Override
+    public void onMove(Stone stone) {
+        mHasPendingNode = true;
+        mPendingMove = stone;
+    }
+
+    @Override
+    public void onSetupStone(StoneColor color, int x, int y) {
+        if (mGameTree != null) {
+            return;
+        }
+        mHasPendingNode = true;
+        Stone stone = new Stone();
+        stone.color = color;
+        stone.intersection = Intersection.valueOf(x, y);
+        mPendingSetup.add(stone);
+    }
+
+    @Override
+    public void onProperty(String id, CharSequence value) {
+        if (id.equals("SZ") && mGameTree == null) {
+            int size = 0;
+            for (int i = 0; i < value.length() && value.charAt(i) >= '0' && value.charAt(i) <= '9'; i++) {
+                size = size * 10 + (value.charAt(i) - '0');
+            }
+            if (size > 0) {
+                mBoardSize = size;
+            }
+        } else if (id.equals("C")) {
+            mHasPendingNode = true;
+            mPendingComment = value.toString();
+        }
+    }
+
+    @Override
+    public void onGameEnd(int gameIndex) {
+        commitNode();
+        ensureGameTree();
+    }
+
+    /**
+     * 提交正在解析的节点，第一个节点作为根节点创建棋谱树
+     */
+    private void commitNode() {
+        if (!mHasPendingNode) {
+            return;
+        }
+        if (mGameTree == null) {
+            ensureGameTree();
+            if (mPendingMove == null) {
+                mCurrent.setComment(mPendingComment);
+                clearPendingNode();
+                return;
+            }
+        }
+        if (mPendingMove != null) {
+            mCurrent = mGameTree.addMove(mCurrent, mPendingMove.toMove());
+            if (mPendingComment != null) {
+                mCurrent.setComment(mPendingComment);
+            }
+        } else if (mPendingComment != null) {
+            String comment = mCurrent.getComment();
+            mCurrent.setComment(comment == null ? mPendingComment : comment + "\n" + mPendingComment);
+        }
+        clearPendingNode();
+    }
+
+    private void clearPendingNode() {
+        mHasPendingNode = false;
+        mPendingMove = null;
+        mPendingComment = null;
+        mPendingSetup.clear();
+    }
+
+    /**
+     * 创建棋谱树，正在解析的节点为根节点，其中的摆子作为初始局面
+     */
+    private void ensureGameTree() {
+        if (mGameTree == null) {
+            BoardState initialState = BoardState.empty(mBoardSize);
+            for (Stone stone : mPendingSetup) {
+                int x = stone.intersection.x;
+                int y = stone.intersection.y;
+                if (x < mBoardSize && y < mBoardSize) {
+                    initialState = stone.color == null
+                            ? initialState.withoutStone(x, y) : initialState.withStone(x, y, stone.color);
+                }
+            }
+            mPendingSetup.clear();
+            mGameTree = new GameTree(initialState, GameTree.DEFAULT_KEYFRAME_INTERVAL);
+            mCurrent = mGameTree.getRoot();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package cn.ezandroid.lib.board.sgf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+import cn.ezandroid.lib.board.Move;
+
+/**
+ * SGF增量追加器，用于对局中的自动保存
+ * <p>
+ * 文件始终是以')'结尾的完整棋谱；追加着手时覆盖结尾的')'并写入新节点和新的')'，
+ * 每手的写入量与棋谱长度无关，进程意外退出时已写入的内容仍然可以正常解析
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class SgfAppender implements Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final RandomAccessFile mFile;
+    private long mEndPosition; // 结尾')'的位置
+
+    /**
+     * 打开棋谱文件，文件不存在或为空时写入只有根节点的新棋谱
+     *
+     * @param file
+     * @param boardSize 新建棋谱时的棋盘大小
+     * @throws IOException 文件不是以')'结尾的棋谱时抛出
+     */
+    public SgfAppender(File file, int boardSize) throws IOException {
+        mFile = new RandomAccessFile(file, "rw");
+        if (mFile.length() == 0) {
+            mFile.write(("(;FF[4]GM[1]CA[UTF-8]SZ[" + boardSize + "])").getBytes(UTF_8));
+            mEndPosition = mFile.length() - 1;
+        } else {
+            mEndPosition = findEndPosition();
+            if (mEndPosition < 0) {
+                mFile.close();
+                throw new IOException("Not a complete SGF game ending with its main line: " + file);
+            }
+            // 截掉结尾')'之后的空白
+            mFile.setLength(mEndPosition + 1);
+        }
+    }
+
+    /**
+     * 查找结尾')'的位置，')'之前也是')'时说明棋谱以变化分支结束，无法在主分支末尾追加
+     *
+     * @return 不能追加时返回-1
+     * @throws IOException
+     */
+    private long findEndPosition() throws IOException {
+        long end = -1;
+        long position = mFile.length() - 1;
+        while (position >= 0) {
+            mFile.seek(position);
+            int c = mFile.read();
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                if (end >= 0) {
+                    return c == ')' ? -1 : end;
+                } else if (c == ')') {
+                    end = position;
+                } else {
+                    return -1;
+                }
+            }
+            position--;
+        }
+        return -1;
+    }
+
+    /**
+     * 在主分支末尾追加着手
+     *
+     * @param move
+     * @throws IOException
+     */
+    public void append(Move move) throws IOException {
+        append(move, null);
+    }
+
+    /**
+     * 在主分支末尾追加带注释的着手
+     *
+     * @param move
+     * @param comment 没有注释时为null
+     * @throws IOException
+     */
+    public void append(Move move, String comment) throws IOException {
+        byte[] bytes = (SgfWriter.toNode(move, comment) + ")").getBytes(UTF_8);
+        mFile.seek(mEndPosition);
+        mFile.write(bytes);
+        mEndPosition += bytes.length - 1;
+    }
+
+    /**
+     * 将已写入的内容同步到存储设备
+     *
+     * @throws IOException
+     */
+    public void sync() throws IOException {
+        mFile.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+}
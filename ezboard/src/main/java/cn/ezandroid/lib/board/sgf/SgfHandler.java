@@ -0,0 +1,71 @@
+package cn.ezandroid.lib.board.sgf;
+
+import cn.ezandroid.lib.board.Stone;
+import cn.ezandroid.lib.board.StoneColor;
+
+/**
+ * SGF解析事件回调
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public interface SgfHandler {
+
+    /**
+     * 开始解析一局棋谱
+     *
+     * @param gameIndex 棋谱在文件中的序号，从0开始
+     */
+    void onGameStart(int gameIndex);
+
+    /**
+     * 开始解析一个变化分支
+     *
+     * @param depth 分支嵌套深度，棋谱主干为0，第一层变化为1
+     * @return 返回false时跳过整个分支，不解码其中的内容，也不会回调对应的onVariationEnd
+     */
+    boolean onVariationStart(int depth);
+
+    /**
+     * 变化分支解析结束
+     *
+     * @param depth
+     */
+    void onVariationEnd(int depth);
+
+    /**
+     * 开始解析一个节点
+     */
+    void onNode();
+
+    /**
+     * 着手(B/W属性)
+     *
+     * @param stone 停一手时intersection为null，手数为从棋谱开始沿当前分支计数
+     */
+    void onMove(Stone stone);
+
+    /**
+     * 摆子(AB/AW/AE属性)，压缩的点列表会逐点回调
+     *
+     * @param color 黑子、白子，AE时为null
+     * @param x
+     * @param y
+     */
+    void onSetupStone(StoneColor color, int x, int y);
+
+    /**
+     * 其他属性，包括棋局信息、注释及标记(TR/SQ/CR/MA/LB等)
+     *
+     * @param id    属性名
+     * @param value 已处理转义的属性值，只在回调期间有效，需要保存时请调用toString
+     */
+    void onProperty(String id, CharSequence value);
+
+    /**
+     * 一局棋谱解析结束
+     *
+     * @param gameIndex
+     */
+    void onGameEnd(int gameIndex);
+}
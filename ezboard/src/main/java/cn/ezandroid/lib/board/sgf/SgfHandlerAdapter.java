@@ -0,0 +1,46 @@
+package cn.ezandroid.lib.board.sgf;
+
+import cn.ezandroid.lib.board.Stone;
+import cn.ezandroid.lib.board.StoneColor;
+
+/**
+ * SGF解析事件回调的空实现，只需关心部分事件时继承此类
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class SgfHandlerAdapter implements SgfHandler {
+
+    @Override
+    public void onGameStart(int gameIndex) {
+    }
+
+    @Override
+    public boolean onVariationStart(int depth) {
+        return true;
+    }
+
+    @Override
+    public void onVariationEnd(int depth) {
+    }
+
+    @Override
+    public void onNode() {
+    }
+
+    @Override
+    public void onMove(Stone stone) {
+    }
+
+    @Override
+    public void onSetupStone(StoneColor color, int x, int y) {
+    }
+
+    @Override
+    public void onProperty(String id, CharSequence value) {
+    }
+
+    @Override
+    public void onGameEnd(int gameIndex) {
+    }
+}
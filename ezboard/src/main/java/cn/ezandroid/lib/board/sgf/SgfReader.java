@@ -0,0 +1,360 @@
+package cn.ezandroid.lib.board.sgf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import cn.ezandroid.lib.board.Intersection;
+import cn.ezandroid.lib.board.Stone;
+import cn.ezandroid.lib.board.StoneColor;
+
+/**
+ * 流式SGF解析器
+ * <p>
+ * 边读取边以事件的形式回调SGF中的着手、摆子及其他属性，不构建完整的语法树；
+ * 属性名按出现过的名称缓存复用，属性值写入复用的缓冲区，除着手对应的Stone外解析过程基本不产生对象
+ * <p>
+ * 变化分支可以在onVariationStart中选择跳过，跳过的分支及skipGames跳过的棋谱只做括号匹配，不解码属性
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class SgfReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int DEFAULT_BOARD_SIZE = 19;
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mPosition;
+    private int mLimit;
+
+    private final StringBuilder mValue = new StringBuilder(); // 复用的属性值缓冲区
+    private final char[] mIdent = new char[16];
+    private int mIdentLength;
+    private String[] mIdentNames = new String[32]; // 属性名缓存
+    private int mIdentCount;
+
+    private int[] mMoveCountStack = new int[16]; // 各层变化分支开始时的手数
+    private int mGameIndex;
+    private int mBoardSize = DEFAULT_BOARD_SIZE;
+
+    public SgfReader(Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * 获取当前棋谱的棋盘大小，未指定SZ时为19
+     *
+     * @return
+     */
+    public int getBoardSize() {
+        return mBoardSize;
+    }
+
+    /**
+     * 获取下一局棋谱的序号
+     *
+     * @return
+     */
+    public int getGameIndex() {
+        return mGameIndex;
+    }
+
+    /**
+     * 跳过指定数量的棋谱，只做括号匹配，不解码属性
+     *
+     * @param count
+     * @return 实际跳过的棋谱数，到达文件末尾时可能小于count
+     * @throws IOException
+     */
+    public int skipGames(int count) throws IOException {
+        int skipped = 0;
+        while (skipped < count && seekGameStart()) {
+            skipTree();
+            mGameIndex++;
+            skipped++;
+        }
+        return skipped;
+    }
+
+    /**
+     * 解析下一局棋谱
+     *
+     * @param handler
+     * @return 没有更多棋谱时返回false
+     * @throws IOException 读取失败或格式错误
+     */
+    public boolean nextGame(SgfHandler handler) throws IOException {
+        if (!seekGameStart()) {
+            return false;
+        }
+        mBoardSize = DEFAULT_BOARD_SIZE;
+        int gameIndex = mGameIndex++;
+        handler.onGameStart(gameIndex);
+
+        int depth = 0;
+        int moveCount = 0;
+        while (true) {
+            int c = read();
+            switch (c) {
+                case -1:
+                    throw new IOException("Unexpected end of SGF in game " + gameIndex);
+                case '(':
+                    if (handler.onVariationStart(depth + 1)) {
+                        depth++;
+                        if (depth >= mMoveCountStack.length) {
+                            int[] stack = new int[mMoveCountStack.length * 2];
+                            System.arraycopy(mMoveCountStack, 0, stack, 0, mMoveCountStack.length);
+                            mMoveCountStack = stack;
+                        }
+                        mMoveCountStack[depth] = moveCount;
+                    } else {
+                        skipTree();
+                    }
+                    break;
+                case ')':
+                    if (depth == 0) {
+                        handler.onGameEnd(gameIndex);
+                        return true;
+                    }
+                    moveCount = mMoveCountStack[depth];
+                    handler.onVariationEnd(depth);
+                    depth--;
+                    break;
+                case ';':
+                    handler.onNode();
+                    break;
+                case '[':
+                    // 缺少属性名的属性值
+                    skipValue();
+                    break;
+                default:
+                    if (c >= 'A' && c <= 'Z') {
+                        moveCount = readProperty(c, handler, moveCount);
+                    }
+                    // 忽略空白及其他无关字符
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+
+    private int read() throws IOException {
+        if (mPosition >= mLimit) {
+            mLimit = mReader.read(mBuffer, 0, BUFFER_SIZE);
+            mPosition = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                return -1;
+            }
+        }
+        return mBuffer[mPosition++];
+    }
+
+    private int peek() throws IOException {
+        int c = read();
+        if (c >= 0) {
+            mPosition--;
+        }
+        return c;
+    }
+
+    private boolean seekGameStart() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c >= 0 && c != '(');
+        return c == '(';
+    }
+
+    /**
+     * 跳过当前'('对应的整个分支，调用时'('已被读取
+     *
+     * @throws IOException
+     */
+    private void skipTree() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            switch (c) {
+                case -1:
+                    throw new IOException("Unexpected end of SGF");
+                case '(':
+                    depth++;
+                    break;
+                case ')':
+                    depth--;
+                    break;
+                case '[':
+                    skipValue();
+                    break;
+            }
+        }
+    }
+
+    private void skipValue() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unexpected end of SGF value");
+            } else if (c == '\\') {
+                read();
+            } else if (c == ']') {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 读取属性值到mValue，调用时'['已被读取
+     *
+     * @throws IOException
+     */
+    private void readValue() throws IOException {
+        mValue.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unexpected end of SGF value");
+            } else if (c == '\\') {
+                c = read();
+                if (c == '\r') {
+                    // 转义的换行为软换行，直接去掉
+                    if (peek() == '\n') {
+                        read();
+                    }
+                } else if (c != '\n' && c != -1) {
+                    mValue.append((char) c);
+                }
+            } else if (c == ']') {
+                return;
+            } else {
+                mValue.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * 读取属性名及所有属性值并回调，调用时属性名的第一个字符已被读取
+     *
+     * @param first
+     * @param handler
+     * @param moveCount
+     * @return 处理后的手数
+     * @throws IOException
+     */
+    private int readProperty(int first, SgfHandler handler, int moveCount) throws IOException {
+        mIdentLength = 0;
+        mIdent[mIdentLength++] = (char) first;
+        int c;
+        while (true) {
+            c = read();
+            if (c >= 'A' && c <= 'Z') {
+                if (mIdentLength < mIdent.length) {
+                    mIdent[mIdentLength++] = (char) c;
+                }
+            } else if (c < 'a' || c > 'z') {
+                // 旧版本SGF属性名中的小写字母直接忽略
+                break;
+            }
+        }
+        String id = internIdent();
+        while (true) {
+            while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                c = read();
+            }
+            if (c != '[') {
+                if (c >= 0) {
+                    mPosition--;
+                }
+                return moveCount;
+            }
+            readValue();
+            moveCount = dispatchValue(id, handler, moveCount);
+            c = read();
+        }
+    }
+
+    private int dispatchValue(String id, SgfHandler handler, int moveCount) {
+        if (id.equals("B") || id.equals("W")) {
+            Stone stone = new Stone();
+            stone.color = id.equals("B") ? StoneColor.BLACK : StoneColor.WHITE;
+            stone.number = ++moveCount;
+            if (mValue.length() >= 2 && !(mBoardSize <= 19 && mValue.charAt(0) == 't' && mValue.charAt(1) == 't')) {
+                stone.intersection = Intersection.valueOf(decode(mValue.charAt(0)), decode(mValue.charAt(1)));
+            }
+            handler.onMove(stone);
+        } else if (id.equals("AB") || id.equals("AW") || id.equals("AE")) {
+            StoneColor color = id.equals("AB") ? StoneColor.BLACK : id.equals("AW") ? StoneColor.WHITE : null;
+            if (mValue.length() >= 5 && mValue.charAt(2) == ':') {
+                // 压缩的点列表
+                int x1 = decode(mValue.charAt(0));
+                int y1 = decode(mValue.charAt(1));
+                int x2 = decode(mValue.charAt(3));
+                int y2 = decode(mValue.charAt(4));
+                for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++) {
+                    for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++) {
+                        handler.onSetupStone(color, x, y);
+                    }
+                }
+            } else if (mValue.length() >= 2) {
+                handler.onSetupStone(color, decode(mValue.charAt(0)), decode(mValue.charAt(1)));
+            }
+        } else {
+            if (id.equals("SZ")) {
+                mBoardSize = parseBoardSize();
+            }
+            handler.onProperty(id, mValue);
+        }
+        return moveCount;
+    }
+
+    private int parseBoardSize() {
+        int size = 0;
+        for (int i = 0; i < mValue.length(); i++) {
+            char c = mValue.charAt(i);
+            if (c >= '0' && c <= '9') {
+                size = size * 10 + (c - '0');
+            } else if (c == ':') {
+                // 矩形棋盘取列数
+                break;
+            }
+        }
+        return size > 0 ? size : DEFAULT_BOARD_SIZE;
+    }
+
+    private static int decode(char c) {
+        return c >= 'a' && c <= 'z' ? c - 'a' : c - 'A' + 26;
+    }
+
+    private String internIdent() {
+        for (int i = 0; i < mIdentCount; i++) {
+            String name = mIdentNames[i];
+            if (name.length() == mIdentLength) {
+                boolean match = true;
+                for (int j = 0; j < mIdentLength; j++) {
+                    if (name.charAt(j) != mIdent[j]) {
+                        match = false;
+                        break;
+                    }
+                }
+                if (match) {
+                    return name;
+                }
+            }
+        }
+        String name = new String(mIdent, 0, mIdentLength);
+        if (mIdentCount == mIdentNames.length) {
+            String[] names = new String[mIdentCount * 2];
+            System.arraycopy(mIdentNames, 0, names, 0, mIdentCount);
+            mIdentNames = names;
+        }
+        mIdentNames[mIdentCount++] = name;
+        return name;
+    }
+}
@@ -0,0 +1,177 @@
+package cn.ezandroid.lib.board.sgf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.ezandroid.lib.board.BoardState;
+import cn.ezandroid.lib.board.Move;
+import cn.ezandroid.lib.board.StoneColor;
+import cn.ezandroid.lib.board.game.GameNode;
+import cn.ezandroid.lib.board.game.GameTree;
+
+/**
+ * SGF序列化
+ * <p>
+ * 输出的棋谱可以被SgfReader解析，得到相同的着手、摆子、注释及变化分支
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class SgfWriter {
+
+    private final Writer mWriter;
+
+    public SgfWriter(Writer writer) {
+        mWriter = writer;
+    }
+
+    /**
+     * 写入棋谱树
+     * <p>
+     * 变化分支按子节点顺序输出，第一个子节点为主分支；使用显式栈遍历，不受变化嵌套深度限制
+     *
+     * @param tree
+     * @throws IOException
+     */
+    public void write(GameTree tree) throws IOException {
+        GameNode root = tree.getRoot();
+        mWriter.write('(');
+        writeRoot(tree.getBoardSize(), tree.getBoardState(root));
+        writeComment(root.getComment());
+
+        // 栈中保存待输出的节点，null表示需要输出')'结束变化分支
+        List<GameNode> stack = new ArrayList<>();
+        pushChildren(stack, root);
+        while (!stack.isEmpty()) {
+            GameNode node = stack.remove(stack.size() - 1);
+            if (node == null) {
+                mWriter.write(')');
+                continue;
+            }
+            if (node.getParent().getChildCount() > 1) {
+                mWriter.write('(');
+            }
+            writeNode(node.getMove(), node.getComment());
+            pushChildren(stack, node);
+        }
+        mWriter.write(")\n");
+        mWriter.flush();
+    }
+
+    /**
+     * 写入只有一个根节点的局面棋谱
+     *
+     * @param state
+     * @throws IOException
+     */
+    public void write(BoardState state) throws IOException {
+        mWriter.write('(');
+        writeRoot(state.getBoardSize(), state);
+        mWriter.write(")\n");
+        mWriter.flush();
+    }
+
+    private void pushChildren(List<GameNode> stack, GameNode node) {
+        int count = node.getChildCount();
+        if (count > 1) {
+            // 多个子节点时每个分支都需要用括号包围，逆序入栈使第一个分支先输出
+            for (int i = count - 1; i >= 0; i--) {
+                stack.add(null);
+                stack.add(node.getChild(i));
+            }
+        } else if (count == 1) {
+            stack.add(node.getChild(0));
+        }
+    }
+
+    private void writeRoot(int boardSize, BoardState state) throws IOException {
+        mWriter.write(";FF[4]GM[1]CA[UTF-8]SZ[");
+        mWriter.write(Integer.toString(boardSize));
+        mWriter.write(']');
+        writeSetup("AB", state, StoneColor.BLACK);
+        writeSetup("AW", state, StoneColor.WHITE);
+    }
+
+    private void writeSetup(String id, BoardState state, StoneColor color) throws IOException {
+        if (state.getStoneCount(color) == 0) {
+            return;
+        }
+        mWriter.write(id);
+        int boardSize = state.getBoardSize();
+        for (int y = 0; y < boardSize; y++) {
+            for (int x = 0; x < boardSize; x++) {
+                if (state.getColor(x, y) == color) {
+                    mWriter.write('[');
+                    mWriter.write(encode(x));
+                    mWriter.write(encode(y));
+                    mWriter.write(']');
+                }
+            }
+        }
+    }
+
+    private void writeNode(Move move, String comment) throws IOException {
+        mWriter.write(toNode(move, comment));
+    }
+
+    private void writeComment(String comment) throws IOException {
+        if (comment != null) {
+            mWriter.write("C[");
+            mWriter.write(escape(comment));
+            mWriter.write(']');
+        }
+    }
+
+    /**
+     * 将着手转换为SGF节点文本，如";B[pd]"
+     *
+     * @param move
+     * @param comment 没有注释时为null
+     * @return
+     */
+    public static String toNode(Move move, String comment) {
+        StringBuilder builder = new StringBuilder(8);
+        builder.append(';').append(move.getColor() == StoneColor.BLACK ? 'B' : 'W').append('[');
+        if (!move.isPass()) {
+            builder.append(encode(move.getX())).append(encode(move.getY()));
+        }
+        builder.append(']');
+        if (comment != null) {
+            builder.append("C[").append(escape(comment)).append(']');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 坐标编码，0-25对应a-z，26-51对应A-Z
+     *
+     * @param value
+     * @return
+     */
+    public static char encode(int value) {
+        return (char) (value < 26 ? 'a' + value : 'A' + value - 26);
+    }
+
+    /**
+     * 转义属性值中的']'和'\'
+     *
+     * @param text
+     * @return
+     */
+    public static String escape(String text) {
+        if (text.indexOf(']') < 0 && text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ']' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -27,6 +27,8 @@ public class GoTheme {
 
     public static final int INVALID_VALUE = 0;
 
+    private static final Random RANDOM = new Random();
+
     public String mENName;
     public String mCNName;
     public int mVersion;
@@ -41,6 +43,33 @@ public class GoTheme {
     public MarkTheme mMarkTheme;
     public SoundEffect mSoundEffect;
 
+    private RenderSpec mRenderSpec;
+
+    /**
+     * 编译主题
+     * <p>
+     * 解析颜色字符串并加载资源，生成供绘制时直接读取的不可变主题，修改主题字段后需要重新调用
+     *
+     * @return
+     */
+    public synchronized RenderSpec compile() {
+        mRenderSpec = new RenderSpec(mBoardTheme.compile(), mBlackStoneTheme.compile(),
+                mWhiteStoneTheme.compile(), mMarkTheme.compile());
+        return mRenderSpec;
+    }
+
+    /**
+     * 获取编译后的主题，尚未编译时先进行编译
+     *
+     * @return
+     */
+    public synchronized RenderSpec getRenderSpec() {
+        if (mRenderSpec == null) {
+            compile();
+        }
+        return mRenderSpec;
+    }
+
     /**
      * 音效
      */
@@ -65,10 +94,34 @@ public class GoTheme {
 
         protected DrawableCache mDrawableCache;
 
+        private BoardSpec mSpec;
+
         public BoardTheme(DrawableCache cache) {
             mDrawableCache = cache;
         }
 
+        /**
+         * 编译棋盘主题
+         *
+         * @return
+         */
+        public synchronized BoardSpec compile() {
+            mSpec = new BoardSpec(this);
+            return mSpec;
+        }
+
+        /**
+         * 获取编译后的棋盘主题，尚未编译时先进行编译
+         *
+         * @return
+         */
+        public synchronized BoardSpec getSpec() {
+            if (mSpec == null) {
+                compile();
+            }
+            return mSpec;
+        }
+
         public Drawable getBackground() {
             if (mBackgroundDrawable == null && !TextUtils.isEmpty(mBackground)) {
                 mBackgroundDrawable = mDrawableCache.load(mBackground);
@@ -103,10 +156,34 @@ public class GoTheme {
 
         protected DrawableCache mDrawableCache;
 
+        private StoneSpec mSpec;
+
         public StoneTheme(DrawableCache cache) {
             mDrawableCache = cache;
         }
 
+        /**
+         * 编译棋子主题
+         *
+         * @return
+         */
+        public synchronized StoneSpec compile() {
+            mSpec = new StoneSpec(this);
+            return mSpec;
+        }
+
+        /**
+         * 获取编译后的棋子主题，尚未编译时先进行编译
+         *
+         * @return
+         */
+        public synchronized StoneSpec getSpec() {
+            if (mSpec == null) {
+                compile();
+            }
+            return mSpec;
+        }
+
         public List<Drawable> getTextures() {
             if (mTextureDrawableList.isEmpty() && mTextures != null) {
                 for (String texture : mTextures) {
@@ -121,8 +198,7 @@ public class GoTheme {
         public Drawable getRandomTexture() {
             List<Drawable> drawables = getTextures();
             if (!drawables.isEmpty()) {
-                Random random = new Random();
-                return drawables.get(random.nextInt(drawables.size()));
+                return drawables.get(RANDOM.nextInt(drawables.size()));
             } else {
                 return null;
             }
@@ -142,6 +218,30 @@ public class GoTheme {
     public static class MarkTheme {
         public String mHighLightColor;
 
+        private MarkSpec mSpec;
+
+        /**
+         * 编译标记主题
+         *
+         * @return
+         */
+        public synchronized MarkSpec compile() {
+            mSpec = new MarkSpec(this);
+            return mSpec;
+        }
+
+        /**
+         * 获取编译后的标记主题，尚未编译时先进行编译
+         *
+         * @return
+         */
+        public synchronized MarkSpec getSpec() {
+            if (mSpec == null) {
+                compile();
+            }
+            return mSpec;
+        }
+
         public int getHighLightColor() {
             if (!TextUtils.isEmpty(mHighLightColor)) {
                 return Color.parseColor(mHighLightColor);
@@ -150,6 +250,196 @@ public class GoTheme {
         }
     }
 
+    /**
+     * 编译后的主题
+     */
+    public static final class RenderSpec {
+        public final BoardSpec mBoardSpec;
+        public final StoneSpec mBlackStoneSpec;
+        public final StoneSpec mWhiteStoneSpec;
+        public final MarkSpec mMarkSpec;
+
+        public RenderSpec(BoardSpec boardSpec, StoneSpec blackStoneSpec, StoneSpec whiteStoneSpec, MarkSpec markSpec) {
+            mBoardSpec = boardSpec;
+            mBlackStoneSpec = blackStoneSpec;
+            mWhiteStoneSpec = whiteStoneSpec;
+            mMarkSpec = markSpec;
+        }
+    }
+
+    /**
+     * 编译后的棋盘主题
+     */
+    public static final class BoardSpec {
+        public final Drawable mBackground;
+        public final int mLineColor;
+        public final float mLineWidth;
+        public final int mBorderColor;
+        public final float mBorderWidth;
+        public final boolean mStoneShadowOn;
+
+        BoardSpec(BoardTheme theme) {
+            mBackground = theme.getBackground();
+            mLineColor = theme.getLineColor();
+            mLineWidth = theme.mLineWidth;
+            mBorderColor = theme.getBorderColor();
+            mBorderWidth = theme.mBorderWidth;
+            mStoneShadowOn = theme.mStoneShadowOn;
+        }
+    }
+
+    /**
+     * 编译后的棋子主题，不可修改
+     */
+    public static final class StoneSpec {
+        private final Drawable[] mTextures;
+        private final int[] mTextureColors; // 纯色纹理的颜色
+        private final boolean[] mIsColorTextures; // 是否为纯色纹理
+        public final int mBorderColor;
+        public final float mBorderWidth;
+
+        StoneSpec(StoneTheme theme) {
+            List<Drawable> textures = theme.getTextures();
+            mTextures = textures.toArray(new Drawable[textures.size()]);
+            mTextureColors = new int[mTextures.length];
+            mIsColorTextures = new boolean[mTextures.length];
+            for (int i = 0; i < mTextures.length; i++) {
+                if (mTextures[i] instanceof ColorDrawable) {
+                    mTextureColors[i] = ((ColorDrawable) mTextures[i]).getColor();
+                    mIsColorTextures[i] = true;
+                }
+            }
+            mBorderColor = theme.getBorderColor();
+            mBorderWidth = theme.mBorderWidth;
+        }
+
+        public int getTextureCount() {
+            return mTextures.length;
+        }
+
+        /**
+         * 根据棋子位置及手数选择纹理
+         * <p>
+         * 同一个棋子每次得到的纹理相同，避免重绘时纹理来回变化
+         *
+         * @param x
+         * @param y
+         * @param number
+         * @return
+         */
+        public int selectTextureIndex(int x, int y, int number) {
+            if (mTextures.length <= 1) {
+                return 0;
+            }
+            int hash = x * 73856093 ^ y * 19349663 ^ number * 83492791;
+            hash ^= hash >>> 16;
+            return (hash & 0x7FFFFFFF) % mTextures.length;
+        }
+
+        public Drawable getTexture(int index) {
+            return mTextures[index];
+        }
+
+        public boolean isColorTexture(int index) {
+            return mIsColorTextures[index];
+        }
+
+        public int getTextureColor(int index) {
+            return mTextureColors[index];
+        }
+
+        /**
+         * 获取图片纹理的原图
+         *
+         * @param index
+         * @return 纯色纹理或图片加载失败时返回null
+         */
+        public Bitmap getTextureBitmap(int index) {
+            if (index < 0 || index >= mTextures.length || !(mTextures[index] instanceof BitmapDrawable)) {
+                return null;
+            }
+            Bitmap bitmap = ((BitmapDrawable) mTextures[index]).getBitmap();
+            return bitmap != null && !bitmap.isRecycled() ? bitmap : null;
+        }
+
+        /**
+         * 将所有图片纹理预缩放到指定尺寸
+         * <p>
+         * 应在棋子尺寸或主题变化时调用，不要在绘制过程中调用；可以在任意线程中调用
+         *
+         * @param size 棋子尺寸
+         * @return
+         */
+        public ScaledTextures createScaledTextures(int size) {
+            Bitmap[] bitmaps = new Bitmap[mTextures.length];
+            if (size > 0) {
+                for (int i = 0; i < mTextures.length; i++) {
+                    Bitmap bitmap = getTextureBitmap(i);
+                    if (bitmap == null) {
+                        continue;
+                    }
+                    try {
+                        bitmaps[i] = Bitmap.createScaledBitmap(bitmap, size, size, true);
+                    } catch (OutOfMemoryError e) {
+                        // 缩放失败的纹理绘制时直接缩放原图，不再重试
+                        e.printStackTrace();
+                        break;
+                    }
+                }
+            }
+            return new ScaledTextures(this, size, bitmaps);
+        }
+    }
+
+    /**
+     * 预缩放到同一尺寸的棋子纹理
+     * <p>
+     * 创建后不可修改，由棋盘、缩略图等使用者各自持有，绘制时直接读取，不需要加锁
+     */
+    public static final class ScaledTextures {
+        public final StoneSpec mSpec;
+        public final int mSize;
+        private final Bitmap[] mBitmaps; // 纯色纹理或缩放失败时对应位置为null
+
+        ScaledTextures(StoneSpec spec, int size, Bitmap[] bitmaps) {
+            mSpec = spec;
+            mSize = size;
+            mBitmaps = bitmaps;
+        }
+
+        /**
+         * 是否为指定主题及尺寸的纹理
+         *
+         * @param spec
+         * @param size
+         * @return
+         */
+        public boolean matches(StoneSpec spec, int size) {
+            return mSpec == spec && mSize == size;
+        }
+
+        /**
+         * 获取预缩放的纹理
+         *
+         * @param index 纹理索引
+         * @return 纯色纹理或缩放失败时返回null
+         */
+        public Bitmap get(int index) {
+            return index >= 0 && index < mBitmaps.length ? mBitmaps[index] : null;
+        }
+    }
+
+    /**
+     * 编译后的标记主题
+     */
+    public static final class MarkSpec {
+        public final int mHighLightColor;
+
+        MarkSpec(MarkTheme theme) {
+            mHighLightColor = theme.getHighLightColor();
+        }
+    }
+
     /**
      * Drawable缓存
      */
@@ -0,0 +1,117 @@
+package cn.ezandroid.lib.board.sgf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.List;
+
+import cn.ezandroid.lib.board.Move;
+import cn.ezandroid.lib.board.StoneColor;
+import cn.ezandroid.lib.board.game.GameTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * SgfAppender的追加、重新打开及拒绝以变化分支结尾的棋谱测试
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class SgfAppenderTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("appender", ".sgf");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void appendAndReopen() throws IOException {
+        SgfAppender appender = new SgfAppender(mFile, 13);
+        appender.append(Move.valueOf(StoneColor.BLACK, 3, 3, 1));
+        appender.append(Move.valueOf(StoneColor.WHITE, 9, 9, 2), "a]b\\c");
+        appender.sync();
+        appender.close();
+
+        GameTree tree = read();
+        assertEquals(13, tree.getBoardSize());
+        assertEquals(3, tree.getNodeCount());
+        assertEquals("a]b\\c", tree.getMainLineNode(2).getComment());
+
+        // 重新打开后在主分支末尾继续追加，结尾的空白被截掉
+        append("\n\n");
+        appender = new SgfAppender(mFile, 19);
+        appender.append(Move.pass(StoneColor.BLACK, 3));
+        appender.append(Move.valueOf(StoneColor.WHITE, 10, 3, 4));
+        appender.close();
+
+        tree = read();
+        assertEquals(13, tree.getBoardSize());
+        List<Move> moves = tree.getMoves(tree.getMainLineNode(4));
+        assertEquals(4, moves.size());
+        assertEquals(Move.valueOf(StoneColor.BLACK, 3, 3, 1), moves.get(0));
+        assertEquals(Move.valueOf(StoneColor.WHITE, 9, 9, 2), moves.get(1));
+        assertEquals(Move.pass(StoneColor.BLACK, 3), moves.get(2));
+        assertEquals(Move.valueOf(StoneColor.WHITE, 10, 3, 4), moves.get(3));
+    }
+
+    @Test
+    public void rejectTrailingVariation() throws IOException {
+        append("(;SZ[19];B[pd](;W[dd])(;W[dp]))\n");
+        try {
+            new SgfAppender(mFile, 19);
+            fail("File ending with a variation must be rejected");
+        } catch (IOException expected) {
+            // 文件内容保持不变
+            assertEquals("(;SZ[19];B[pd](;W[dd])(;W[dp]))\n", readText());
+        }
+    }
+
+    private GameTree read() throws IOException {
+        SgfReader reader = new SgfReader(new InputStreamReader(new FileInputStream(mFile), "UTF-8"));
+        try {
+            return GameTreeBuilder.build(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private String readText() throws IOException {
+        InputStreamReader reader = new InputStreamReader(new FileInputStream(mFile), "UTF-8");
+        try {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[256];
+            int count;
+            while ((count = reader.read(buffer)) > 0) {
+                builder.append(buffer, 0, count);
+            }
+            return builder.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void append(String text) throws IOException {
+        OutputStream output = new FileOutputStream(mFile, true);
+        try {
+            output.write(text.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+    }
+}
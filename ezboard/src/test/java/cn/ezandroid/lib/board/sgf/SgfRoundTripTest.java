@@ -0,0 +1,162 @@
+package cn.ezandroid.lib.board.sgf;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.ezandroid.lib.board.BoardState;
+import cn.ezandroid.lib.board.Move;
+import cn.ezandroid.lib.board.StoneColor;
+import cn.ezandroid.lib.board.game.GameNode;
+import cn.ezandroid.lib.board.game.GameTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SgfReader、GameTreeBuilder及SgfWriter的往返测试
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class SgfRoundTripTest {
+
+    @Test
+    public void variations() throws IOException {
+        GameTree tree = read("(;SZ[19];B[pd](;W[dd];B[pp])(;W[dp](;B[dd])(;B[pp])))");
+        assertEquals(7, tree.getNodeCount());
+
+        GameNode first = tree.getRoot().getChild(0);
+        assertEquals(Move.valueOf(StoneColor.BLACK, 15, 3, 1), first.getMove());
+        assertEquals(2, first.getChildCount());
+        assertEquals(Move.valueOf(StoneColor.WHITE, 3, 3, 2), first.getChild(0).getMove());
+        assertEquals(Move.valueOf(StoneColor.WHITE, 3, 15, 2), first.getChild(1).getMove());
+
+        GameNode second = first.getChild(1);
+        assertEquals(2, second.getChildCount());
+        // 变化分支结束后手数恢复到分支开始时
+        assertEquals(Move.valueOf(StoneColor.BLACK, 3, 3, 3), second.getChild(0).getMove());
+        assertEquals(Move.valueOf(StoneColor.BLACK, 15, 15, 3), second.getChild(1).getMove());
+
+        assertSameTree(tree, roundTrip(tree));
+    }
+
+    @Test
+    public void setupStones() throws IOException {
+        GameTree tree = read("(;SZ[9]AB[cc][gc:gd]AW[cg]AE[gd];W[ee])");
+        BoardState state = tree.getBoardState(tree.getRoot());
+        assertEquals(9, state.getBoardSize());
+        assertEquals(StoneColor.BLACK, state.getColor(2, 2));
+        assertEquals(StoneColor.BLACK, state.getColor(6, 2));
+        assertEquals(StoneColor.WHITE, state.getColor(2, 6));
+        assertTrue(state.isEmpty(6, 3));
+        assertEquals(3, state.getStoneCount());
+
+        GameTree copy = roundTrip(tree);
+        assertEquals(state, copy.getBoardState(copy.getRoot()));
+        assertSameTree(tree, copy);
+    }
+
+    @Test
+    public void escapedComments() throws IOException {
+        GameTree tree = read("(;C[root \\] comment];B[aa]C[a\\\\b\\]c];W[bb]C[soft\\\nbreak])");
+        assertEquals("root ] comment", tree.getRoot().getComment());
+        GameNode black = tree.getRoot().getChild(0);
+        assertEquals("a\\b]c", black.getComment());
+        assertEquals("softbreak", black.getChild(0).getComment());
+
+        GameTree copy = roundTrip(tree);
+        assertEquals("root ] comment", copy.getRoot().getComment());
+        assertEquals("a\\b]c", copy.getRoot().getChild(0).getComment());
+        assertSameTree(tree, copy);
+    }
+
+    @Test
+    public void commentBeforeMove() throws IOException {
+        // 节点内的属性没有固定顺序，注释在着手之前时仍属于该着手
+        GameTree tree = read("(;SZ[9];B[aa];C[x]W[bb];C[y]B[cc]C[z])");
+        GameNode black = tree.getRoot().getChild(0);
+        assertNull(tree.getRoot().getComment());
+        assertNull(black.getComment());
+        assertEquals("x", black.getChild(0).getComment());
+        assertEquals("z", black.getChild(0).getChild(0).getComment());
+
+        // 根节点中的着手带着注释成为第一个子节点
+        GameTree rootMove = read("(;C[x]AB[cc]B[aa])");
+        assertNull(rootMove.getRoot().getComment());
+        assertEquals(StoneColor.BLACK, rootMove.getBoardState(rootMove.getRoot()).getColor(2, 2));
+        assertEquals("x", rootMove.getRoot().getChild(0).getComment());
+
+        // 大小在摆子之后指定
+        GameTree sizeAfterSetup = read("(;AB[cc]SZ[9])");
+        assertEquals(9, sizeAfterSetup.getBoardSize());
+        assertEquals(StoneColor.BLACK, sizeAfterSetup.getBoardState(sizeAfterSetup.getRoot()).getColor(2, 2));
+
+        assertSameTree(tree, roundTrip(tree));
+    }
+
+    @Test
+    public void passMoves() throws IOException {
+        GameTree tree = read("(;SZ[19];B[pd];W[];B[tt];W[dd])");
+        List<Move> moves = tree.getMoves(tree.getMainLineNode(4));
+        assertEquals(4, moves.size());
+        assertEquals(Move.pass(StoneColor.WHITE, 2), moves.get(1));
+        assertEquals(Move.pass(StoneColor.BLACK, 3), moves.get(2));
+        assertEquals(Move.valueOf(StoneColor.WHITE, 3, 3, 4), moves.get(3));
+
+        // 19路以上的棋盘tt是普通坐标
+        GameTree large = read("(;SZ[21];B[tt])");
+        assertEquals(Move.valueOf(StoneColor.BLACK, 19, 19, 1), large.getRoot().getChild(0).getMove());
+
+        assertSameTree(tree, roundTrip(tree));
+    }
+
+    @Test
+    public void skipGames() throws IOException {
+        SgfReader reader = new SgfReader(new StringReader(
+                "(;C[x\\)](;B[aa])(;B[bb]))\n(;SZ[9];B[cc])\n(;SZ[13];W[dd])"));
+        assertEquals(1, reader.skipGames(1));
+        GameTree tree = GameTreeBuilder.build(reader);
+        assertEquals(9, tree.getBoardSize());
+        assertEquals(Move.valueOf(StoneColor.BLACK, 2, 2, 1), tree.getRoot().getChild(0).getMove());
+        assertEquals(1, reader.skipGames(5));
+        assertNull(GameTreeBuilder.build(reader));
+    }
+
+    private static GameTree read(String sgf) throws IOException {
+        return GameTreeBuilder.build(new SgfReader(new StringReader(sgf)));
+    }
+
+    private static GameTree roundTrip(GameTree tree) throws IOException {
+        StringWriter writer = new StringWriter();
+        new SgfWriter(writer).write(tree);
+        return read(writer.toString());
+    }
+
+    /**
+     * 按先序比较两棵棋谱树的着手、注释及分支顺序
+     */
+    private static void assertSameTree(GameTree expected, GameTree actual) {
+        assertEquals(expected.getNodeCount(), actual.getNodeCount());
+        List<GameNode> expectedNodes = new ArrayList<>();
+        List<GameNode> actualNodes = new ArrayList<>();
+        expectedNodes.add(expected.getRoot());
+        actualNodes.add(actual.getRoot());
+        while (!expectedNodes.isEmpty()) {
+            GameNode e = expectedNodes.remove(expectedNodes.size() - 1);
+            GameNode a = actualNodes.remove(actualNodes.size() - 1);
+            assertEquals(e.getMove(), a.getMove());
+            assertEquals(e.getComment(), a.getComment());
+            assertEquals(e.getChildCount(), a.getChildCount());
+            for (int i = 0; i < e.getChildCount(); i++) {
+                expectedNodes.add(e.getChild(i));
+                actualNodes.add(a.getChild(i));
+            }
+        }
+    }
+}
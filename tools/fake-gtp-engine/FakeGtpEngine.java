@@ -0,0 +1,250 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Random;
+
+/**
+ * 用于压测GtpClient的假GTP引擎
+ * <p>
+ * 只依赖JDK，在标准输入输出上实现GTP的常用命令；genmove随机选择空点，
+ * lz-analyze及kata-analyze按指定间隔输出随机的分析结果，直到收到下一条命令
+ * <p>
+ * 参数：--genmove-delay 毫秒 genmove回复前的等待时间，--candidates 数量 每行分析输出的候选点数，--seed 随机种子
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class FakeGtpEngine {
+
+    private static final String COLUMNS = "ABCDEFGHJKLMNOPQRSTUVWXYZ";
+
+    private final PrintStream mOut = new PrintStream(System.out, false);
+    private final Random mRandom;
+    private final long mGenmoveDelay;
+    private final int mCandidates;
+
+    private int mBoardSize = 19;
+    private byte[] mBoard = new byte[19 * 19];
+
+    private Thread mAnalysisThread;
+    private volatile boolean mIsAnalyzing;
+
+    private FakeGtpEngine(long seed, long genmoveDelay, int candidates) {
+        mRandom = new Random(seed);
+        mGenmoveDelay = genmoveDelay;
+        mCandidates = candidates;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seed = 1;
+        long genmoveDelay = 0;
+        int candidates = 8;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--genmove-delay":
+                    genmoveDelay = Long.parseLong(args[i + 1]);
+                    break;
+                case "--candidates":
+                    candidates = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+        new FakeGtpEngine(seed, genmoveDelay, candidates).run();
+    }
+
+    private void run() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            stopAnalysis();
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            String id = "";
+            int index = 0;
+            if (Character.isDigit(parts[0].charAt(0))) {
+                id = parts[0];
+                index = 1;
+            }
+            if (index >= parts.length) {
+                continue;
+            }
+            if (!execute(id, parts[index], parts, index + 1)) {
+                break;
+            }
+        }
+        stopAnalysis();
+        mOut.flush();
+    }
+
+    private boolean execute(String id, String command, String[] args, int first) {
+        switch (command) {
+            case "protocol_version":
+                reply(id, "2");
+                break;
+            case "name":
+                reply(id, "FakeGtpEngine");
+                break;
+            case "version":
+                reply(id, "1.0");
+                break;
+            case "boardsize":
+                mBoardSize = Integer.parseInt(args[first]);
+                mBoard = new byte[mBoardSize * mBoardSize];
+                reply(id, "");
+                break;
+            case "clear_board":
+                mBoard = new byte[mBoardSize * mBoardSize];
+                reply(id, "");
+                break;
+            case "komi":
+                reply(id, "");
+                break;
+            case "play": {
+                int vertex = parseVertex(args[first + 1]);
+                if (vertex >= 0) {
+                    mBoard[vertex] = 1;
+                }
+                reply(id, "");
+                break;
+            }
+            case "genmove":
+                if (mGenmoveDelay > 0) {
+                    try {
+                        Thread.sleep(mGenmoveDelay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                reply(id, randomMove());
+                break;
+            case "lz-analyze":
+            case "kata-analyze":
+                startAnalysis(id, args, first, command.equals("kata-analyze"));
+                break;
+            case "quit":
+                reply(id, "");
+                return false;
+            default:
+                mOut.print("?" + id + " unknown command\n\n");
+                mOut.flush();
+                break;
+        }
+        return true;
+    }
+
+    private void reply(String id, String text) {
+        mOut.print("=" + id + (text.isEmpty() ? "" : " " + text) + "\n\n");
+        mOut.flush();
+    }
+
+    private String randomMove() {
+        int count = mBoardSize * mBoardSize;
+        int start = mRandom.nextInt(count);
+        for (int i = 0; i < count; i++) {
+            int vertex = (start + i) % count;
+            if (mBoard[vertex] == 0) {
+                mBoard[vertex] = 1;
+                return toVertex(vertex);
+            }
+        }
+        return "pass";
+    }
+
+    private void startAnalysis(String id, String[] args, int first, final boolean kata) {
+        long interval = 10;
+        for (int i = first; i < args.length; i++) {
+            if (Character.isDigit(args[i].charAt(0))) {
+                interval = Long.parseLong(args[i]);
+            }
+        }
+        final long delay = interval * 10;
+        mOut.print("=" + id + "\n");
+        mOut.flush();
+        mIsAnalyzing = true;
+        mAnalysisThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                StringBuilder builder = new StringBuilder(4096);
+                while (mIsAnalyzing) {
+                    builder.setLength(0);
+                    appendAnalysis(builder, kata);
+                    synchronized (mOut) {
+                        mOut.print(builder);
+                        mOut.flush();
+                    }
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "analysis");
+        mAnalysisThread.start();
+    }
+
+    private void stopAnalysis() {
+        if (mAnalysisThread == null) {
+            return;
+        }
+        mIsAnalyzing = false;
+        mAnalysisThread.interrupt();
+        try {
+            mAnalysisThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mAnalysisThread = null;
+        // 空行结束分析命令的回复
+        mOut.print("\n");
+        mOut.flush();
+    }
+
+    private void appendAnalysis(StringBuilder builder, boolean kata) {
+        int count = mBoardSize * mBoardSize;
+        for (int order = 0; order < mCandidates; order++) {
+            int vertex = mRandom.nextInt(count);
+            int visits = 1 + mRandom.nextInt(5000);
+            builder.append(order == 0 ? "info move " : " info move ").append(toVertex(vertex))
+                    .append(" visits ").append(visits).append(" winrate ");
+            if (kata) {
+                builder.append(mRandom.nextInt(1000) / 1000f);
+            } else {
+                builder.append(mRandom.nextInt(10000));
+            }
+            builder.append(" prior ").append(mRandom.nextInt(10000))
+                    .append(" order ").append(order)
+                    .append(" pv ").append(toVertex(vertex)).append(' ').append(toVertex(mRandom.nextInt(count)));
+        }
+        if (kata) {
+            builder.append(" ownership");
+            for (int i = 0; i < count; i++) {
+                builder.append(' ').append(mRandom.nextInt(2001) / 1000f - 1);
+            }
+        }
+        builder.append('\n');
+    }
+
+    private int parseVertex(String text) {
+        if (text.equalsIgnoreCase("pass") || text.length() < 2) {
+            return -1;
+        }
+        int x = COLUMNS.indexOf(Character.toUpperCase(text.charAt(0)));
+        int row = Integer.parseInt(text.substring(1));
+        return x + (mBoardSize - row) * mBoardSize;
+    }
+
+    private String toVertex(int vertex) {
+        return String.valueOf(COLUMNS.charAt(vertex % mBoardSize)) + (mBoardSize - vertex / mBoardSize);
+    }
+}
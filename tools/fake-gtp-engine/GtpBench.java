@@ -0,0 +1,126 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.ezandroid.lib.board.gtp.GtpAnalysis;
+import cn.ezandroid.lib.board.gtp.GtpClient;
+
+/**
+ * GtpClient压测，启动FakeGtpEngine子进程，分别测量逐条等待回复与流水线发送时的命令吞吐量、单条命令延迟及分析输出的解析速度
+ * <p>
+ * 参数：命令数(默认20000) 分析时长秒数(默认3)
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class GtpBench {
+
+    public static void main(String[] args) throws Exception {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int analysisSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        GtpClient client = startEngine("--candidates", "10");
+        try {
+            benchSequential(client, commands / 10);
+            benchPipelined(client, commands);
+            benchAnalysis(client, "lz-analyze b 1", GtpAnalysis.FORMAT_LEELA_ZERO, analysisSeconds);
+            benchAnalysis(client, "kata-analyze b 1 ownership true", GtpAnalysis.FORMAT_KATAGO, analysisSeconds);
+        } finally {
+            client.close();
+        }
+    }
+
+    private static GtpClient startEngine(String... options) throws IOException {
+        String[] command = new String[4 + options.length];
+        command[0] = new File(System.getProperty("java.home"), "bin/java").getPath();
+        command[1] = "-cp";
+        command[2] = System.getProperty("java.class.path");
+        command[3] = "FakeGtpEngine";
+        System.arraycopy(options, 0, command, 4, options.length);
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        return new GtpClient(process);
+    }
+
+    /**
+     * 每条命令等待回复后再发送下一条，统计单条命令的往返延迟
+     */
+    private static void benchSequential(GtpClient client, int count) throws Exception {
+        long[] latencies = new long[count];
+        final Object lock = new Object();
+        final boolean[] done = new boolean[1];
+        GtpClient.Callback callback = new GtpClient.Callback() {
+            @Override
+            public void onResponse(boolean success, String response) {
+                synchronized (lock) {
+                    done[0] = true;
+                    lock.notify();
+                }
+            }
+        };
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            synchronized (lock) {
+                done[0] = false;
+                client.send("name", callback);
+                while (!done[0]) {
+                    lock.wait();
+                }
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        long elapsed = System.nanoTime() - begin;
+        Arrays.sort(latencies);
+        System.out.printf("sequential: %d commands, %.0f cmd/s, latency p50 %.1f us, p99 %.1f us%n",
+                count, count * 1e9 / elapsed, latencies[count / 2] / 1e3, latencies[count * 99 / 100] / 1e3);
+    }
+
+    /**
+     * 连续发送所有命令后等待全部回复
+     */
+    private static void benchPipelined(GtpClient client, int count) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(count);
+        GtpClient.Callback callback = new GtpClient.Callback() {
+            @Override
+            public void onResponse(boolean success, String response) {
+                latch.countDown();
+            }
+        };
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            client.send("name", callback);
+        }
+        latch.await(60, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - begin;
+        System.out.printf("pipelined: %d commands, %.0f cmd/s%n", count - latch.getCount(), count * 1e9 / elapsed);
+    }
+
+    /**
+     * 统计分析输出的行数及解析后的候选点数
+     */
+    private static void benchAnalysis(GtpClient client, String command, int format, int seconds) throws Exception {
+        final AtomicInteger lines = new AtomicInteger();
+        final AtomicInteger candidates = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(1);
+        client.analyze(command, format, new GtpClient.AnalysisListener() {
+            @Override
+            public void onAnalysis(GtpAnalysis analysis) {
+                lines.incrementAndGet();
+                candidates.addAndGet(analysis.candidateCount);
+            }
+        }, new GtpClient.Callback() {
+            @Override
+            public void onResponse(boolean success, String response) {
+                finished.countDown();
+            }
+        });
+        Thread.sleep(seconds * 1000L);
+        client.send("protocol_version", null);
+        finished.await(10, TimeUnit.SECONDS);
+        System.out.printf("%s: %d lines, %.0f lines/s, %d candidates%n",
+                command, lines.get(), lines.get() / (double) seconds, candidates.get());
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cn.ezandroid.lib.board.Stone;
+import cn.ezandroid.lib.board.StoneColor;
+import cn.ezandroid.lib.board.sgf.SgfHandlerAdapter;
+import cn.ezandroid.lib.board.sgf.SgfReader;
+
+/**
+ * SgfReader压测，统计完整解析(nextGame)与只做括号匹配跳过(skipGames)时每秒处理的棋谱数及MB数
+ * <p>
+ * 语料目录下的.sgf文件(包括子目录)先全部读入内存并按UTF-8解码，计时只包含解析本身
+ * <p>
+ * 参数：语料目录 测量轮数(默认5)
+ *
+ * @author like
+ * @date 2018-10-08
+ */
+public class SgfBench {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int WARMUP_ROUNDS = 2;
+
+    /**
+     * 统计着手及摆子数，避免解析结果被优化掉
+     */
+    private static class CountingHandler extends SgfHandlerAdapter {
+
+        long mMoves;
+        long mSetupStones;
+
+        @Override
+        public void onMove(Stone stone) {
+            mMoves++;
+        }
+
+        @Override
+        public void onSetupStone(StoneColor color, int x, int y) {
+            mSetupStones++;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java SgfBench <corpus-dir> [rounds]");
+            System.exit(2);
+        }
+        File dir = new File(args[0]);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        List<File> files = new ArrayList<>();
+        collect(dir, files);
+        if (files.isEmpty()) {
+            System.err.println("No .sgf files under " + dir);
+            System.exit(1);
+        }
+        char[][] texts = new char[files.size()][];
+        long bytes = 0;
+        for (int i = 0; i < texts.length; i++) {
+            byte[] data = readFully(files.get(i));
+            bytes += data.length;
+            texts[i] = new String(data, UTF_8).toCharArray();
+        }
+
+        CountingHandler handler = new CountingHandler();
+        long games = parseAll(texts, handler);
+        System.out.printf("corpus: %d files, %d games, %.2f MB, %d moves, %d setup stones%n",
+                texts.length, games, bytes / 1e6, handler.mMoves, handler.mSetupStones);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            parseAll(texts, new CountingHandler());
+            skipAll(texts);
+        }
+        report("nextGame", texts, bytes, games, rounds, false);
+        report("skipGames", texts, bytes, games, rounds, true);
+    }
+
+    private static void report(String name, char[][] texts, long bytes, long games, int rounds, boolean skip)
+            throws IOException {
+        long[] times = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long begin = System.nanoTime();
+            long count = skip ? skipAll(texts) : parseAll(texts, new CountingHandler());
+            times[i] = System.nanoTime() - begin;
+            if (count != games) {
+                throw new IllegalStateException(name + " saw " + count + " games, expected " + games);
+            }
+        }
+        Arrays.sort(times);
+        // 取中位数，减少GC及调度的影响
+        double seconds = times[rounds / 2] / 1e9;
+        System.out.printf("%s: %.0f games/s, %.1f MB/s (median of %d rounds, %.1f ms)%n",
+                name, games / seconds, bytes / 1e6 / seconds, rounds, seconds * 1e3);
+    }
+
+    private static long parseAll(char[][] texts, CountingHandler handler) throws IOException {
+        long games = 0;
+        for (char[] text : texts) {
+            SgfReader reader = new SgfReader(new CharArrayReader(text));
+            while (reader.nextGame(handler)) {
+                games++;
+            }
+        }
+        return games;
+    }
+
+    private static long skipAll(char[][] texts) throws IOException {
+        long games = 0;
+        for (char[] text : texts) {
+            SgfReader reader = new SgfReader(new CharArrayReader(text));
+            int skipped;
+            while ((skipped = reader.skipGames(Integer.MAX_VALUE)) > 0) {
+                games += skipped;
+            }
+        }
+        return games;
+    }
+
+    private static void collect(File file, List<File> files) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    collect(child, files);
+                }
+            }
+        } else if (file.getName().toLowerCase().endsWith(".sgf")) {
+            files.add(file);
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream((int) file.length());
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) > 0) {
+                output.write(buffer, 0, count);
+            }
+        } finally {
+            input.close();
+        }
+        return output.toByteArray();
+    }
+}